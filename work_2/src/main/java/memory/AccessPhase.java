@@ -0,0 +1,13 @@
+package memory;
+/**
+ * Determines how the SharedVectors of a SharedMatrix synchronize access.
+ * With SHARED, every access goes through the vector's lock.
+ * With PARTITIONED, each vector is read and written by at most one task, so no lock is needed.
+ * With FROZEN, the vectors are only read, so no lock is needed and any write is an error.
+ * The owner of the matrix switches phases only while no task is using it.
+ */
+public enum AccessPhase {
+    SHARED,
+    PARTITIONED,
+    FROZEN
+}
@@ -0,0 +1,26 @@
+package memory;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * Source of the DoubleBuffers behind the buffer-backed layouts (OFF_HEAP and MAPPED).
+ * Buffers live until release() or close() instead of being reclaimed by the garbage collector,
+ * and must not be read or written afterwards.
+ */
+public interface BufferArena extends AutoCloseable {
+
+    // the layout of the matrices backed by this arena
+    StorageLayout getLayout();
+
+    // largest buffer handed out, in doubles; matrices are split into bands no larger than this
+    int maxBufferDoubles();
+
+    DoubleBuffer allocate(int doubles);
+
+    void release(DoubleBuffer buffer);
+
+    long liveBytes();
+
+    @Override
+    void close();
+}
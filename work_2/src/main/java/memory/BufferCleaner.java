@@ -0,0 +1,41 @@
+package memory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/**
+ * Frees a direct or mapped buffer immediately through sun.misc.Unsafe.invokeCleaner when the
+ * jdk.unsupported module is available; otherwise the memory is left to the buffer's GC cleaner.
+ */
+final class BufferCleaner {
+    private final Object unsafe;
+    private final Method invokeCleaner;
+
+    private BufferCleaner(Object unsafe, Method invokeCleaner) {
+        this.unsafe = unsafe;
+        this.invokeCleaner = invokeCleaner;
+    }
+
+    static BufferCleaner find() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            return new BufferCleaner(theUnsafe.get(null), unsafeClass.getMethod("invokeCleaner", ByteBuffer.class));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return new BufferCleaner(null, null);
+        }
+    }
+
+    void free(ByteBuffer bytes) {
+        if (invokeCleaner == null) {
+            return;
+        }
+        try {
+            invokeCleaner.invoke(unsafe, bytes);
+        } catch (ReflectiveOperationException e) {
+            // fall back to the GC cleaner
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package memory;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Recycles the double[] buffers of dead matrices across the runs of an engine.
+ * Buffers are kept in size classes of one exact length each, because the rows of a result matrix
+ * must have exactly the width of the matrix; the intermediates of a computation tree tend to
+ * share a handful of shapes, so exact classes hit often.
+ * An acquired buffer holds stale data, and a released buffer must no longer be used by its
+ * previous owner. The pool retains at most a budget of bytes: when a release goes over it, buffers
+ * of the least recently used size classes are dropped, oldest first, so the shapes of an earlier
+ * run give way to those of the current ones. clear() drops everything when the engine is closed.
+ */
+public class BufferPool {
+
+    public static final long DEFAULT_BUDGET_BYTES = 64L << 20;
+
+    private final long budgetBytes;
+    // size classes in access order, so the least recently acquired or released one comes first
+    private final Map<Integer, ArrayDeque<double[]>> free = new LinkedHashMap<>(16, 0.75f, true);
+    private long retainedBytes = 0;
+    private long reused = 0;
+
+    public BufferPool() {
+        this(DEFAULT_BUDGET_BYTES);
+    }
+
+    public BufferPool(long budgetBytes) {
+        if (budgetBytes < 0) {
+            throw new IllegalArgumentException("Buffer pool budget cannot be negative");
+        }
+        this.budgetBytes = budgetBytes;
+    }
+
+    public synchronized double[] acquire(int length) {
+        ArrayDeque<double[]> sizeClass = free.get(length);
+        double[] buffer = (sizeClass == null) ? null : sizeClass.pollLast();
+        if (buffer == null) {
+            return new double[length];
+        }
+        if (sizeClass.isEmpty()) {
+            free.remove(length);
+        }
+        retainedBytes -= bytesOf(buffer);
+        reused++;
+        return buffer;
+    }
+
+    public synchronized void release(double[] buffer) {
+        if (buffer == null || bytesOf(buffer) > budgetBytes) {
+            return;
+        }
+        free.computeIfAbsent(buffer.length, length -> new ArrayDeque<>()).addLast(buffer);
+        retainedBytes += bytesOf(buffer);
+        while (retainedBytes > budgetBytes) {
+            Iterator<ArrayDeque<double[]>> leastRecent = free.values().iterator();
+            ArrayDeque<double[]> sizeClass = leastRecent.next();
+            retainedBytes -= bytesOf(sizeClass.pollFirst());
+            if (sizeClass.isEmpty()) {
+                leastRecent.remove();
+            }
+        }
+    }
+
+    // bytes currently held for reuse, at most the budget
+    public synchronized long retainedBytes() {
+        return retainedBytes;
+    }
+
+    // number of acquire() calls served from a released buffer
+    public synchronized long reusedCount() {
+        return reused;
+    }
+
+    public synchronized void clear() {
+        free.clear();
+        retainedBytes = 0;
+    }
+
+    private static long bytesOf(double[] buffer) {
+        return (long) buffer.length * Double.BYTES;
+    }
+}
@@ -0,0 +1,155 @@
+package memory;
+
+/**
+ * Cache-blocked dense matrix multiplication over flat row-major double or float arrays,
+ * vectorized through VectorKernels.
+ * The kernel works on private buffers only, so its inner loops take no locks.
+ * B is walked in KC x NC panels that stay resident in cache while every row of A
+ * streams over them, and rows of C are updated MR at a time so each loaded element
+ * of B is reused from a register.
+ */
+public final class GemmKernel {
+
+    public static final int ROW_BLOCK = 64; // rows of A handled by one task
+    public static final int KC = 256; // depth of a panel of B
+    static final int NC = 512; // width of a panel of B
+    private static final int MR = 4; // rows of C updated together
+    private static final int NT = 64; // rows of a transposed B reused across all rows of A
+
+    private GemmKernel() {
+    }
+
+    /**
+     * c += a * b, where a is rows x inner, b is inner x cols and c is rows x cols,
+     * all stored row-major without padding.
+     */
+    public static void multiply(double[] a, double[] b, double[] c, int rows, int inner, int cols) {
+        multiply(a, 0, inner, b, 0, cols, c, 0, cols, rows, inner, cols);
+    }
+
+    /**
+     * c += a * b on sub-matrices addressed through leading dimensions: element (i, k) of a is
+     * a[aOff + i * lda + k], and likewise for b and c. Lets a caller multiply a slice of a
+     * by a panel of b without copying either.
+     */
+    public static void multiply(double[] a, int aOff, int lda, double[] b, int bOff, int ldb,
+            double[] c, int cOff, int ldc, int rows, int inner, int cols) {
+        if (rows > 0 && inner > 0 && cols > 0 && (a.length < aOff + (long) (rows - 1) * lda + inner
+                || b.length < bOff + (long) (inner - 1) * ldb + cols || c.length < cOff + (long) (rows - 1) * ldc + cols)) {
+            throw new IllegalArgumentException("Buffers are too small for a " + rows + "x" + inner + " by "
+                    + inner + "x" + cols + " multiplication.");
+        }
+        for (int jj = 0; jj < cols; jj += NC) {
+            int jEnd = Math.min(cols, jj + NC);
+            for (int kk = 0; kk < inner; kk += KC) {
+                int kEnd = Math.min(inner, kk + KC);
+                int i = 0;
+                for (; i + MR <= rows; i += MR) {
+                    panel4(a, aOff + i * lda, lda, b, bOff, ldb, c, cOff + i * ldc, ldc, kk, kEnd, jj, jEnd);
+                }
+                for (; i < rows; i++) {
+                    panel1(a, aOff + i * lda, b, bOff, ldb, c, cOff + i * ldc, kk, kEnd, jj, jEnd);
+                }
+            }
+        }
+    }
+
+    // updates the four rows of c starting at c0 with one KC x NC panel of b
+    private static void panel4(double[] a, int a0, int lda, double[] b, int bOff, int ldb, double[] c, int c0, int ldc,
+            int kk, int kEnd, int jj, int jEnd) {
+        int a1 = a0 + lda;
+        int a2 = a1 + lda;
+        int a3 = a2 + lda;
+        int c1 = c0 + ldc;
+        int c2 = c1 + ldc;
+        int c3 = c2 + ldc;
+        for (int p = kk; p < kEnd; p++) {
+            double x0 = a[a0 + p];
+            double x1 = a[a1 + p];
+            double x2 = a[a2 + p];
+            double x3 = a[a3 + p];
+            VectorKernels.axpy4(x0, x1, x2, x3, b, bOff + p * ldb + jj, c, c0 + jj, c1 + jj, c2 + jj, c3 + jj, jEnd - jj);
+        }
+    }
+
+    // updates the row of c starting at cRow with one KC x NC panel of b
+    private static void panel1(double[] a, int aRow, double[] b, int bOff, int ldb, double[] c, int cRow,
+            int kk, int kEnd, int jj, int jEnd) {
+        for (int p = kk; p < kEnd; p++) {
+            VectorKernels.axpy(a[aRow + p], b, bOff + p * ldb + jj, c, cRow + jj, jEnd - jj);
+        }
+    }
+
+    /**
+     * c += a * b for a b given transposed: bt is cols x inner, i.e. b stored column-major.
+     * Every element of c is a dot product of two contiguous rows, so a transposed operand is
+     * consumed as it is stored. Rows of bt are walked in blocks of NT that stay resident in cache.
+     */
+    public static void multiplyTransposed(double[] a, double[] bt, double[] c, int rows, int inner, int cols) {
+        if (a.length < rows * inner || bt.length < cols * inner || c.length < rows * cols) {
+            throw new IllegalArgumentException("Buffers are too small for a " + rows + "x" + inner + " by "
+                    + inner + "x" + cols + " multiplication.");
+        }
+        for (int kk = 0; kk < inner; kk += KC) {
+            int depth = Math.min(KC, inner - kk);
+            for (int jj = 0; jj < cols; jj += NT) {
+                int jEnd = Math.min(cols, jj + NT);
+                for (int i = 0; i < rows; i++) {
+                    int aRow = i * inner + kk;
+                    int cRow = i * cols;
+                    for (int j = jj; j < jEnd; j++) {
+                        c[cRow + j] += VectorKernels.dot(a, aRow, bt, j * inner + kk, depth);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Single-precision version of {@link #multiply(double[], double[], double[], int, int, int)}.
+     */
+    public static void multiply(float[] a, float[] b, float[] c, int rows, int inner, int cols) {
+        if (a.length < rows * inner || b.length < inner * cols || c.length < rows * cols) {
+            throw new IllegalArgumentException("Buffers are too small for a " + rows + "x" + inner + " by "
+                    + inner + "x" + cols + " multiplication.");
+        }
+        for (int jj = 0; jj < cols; jj += NC) {
+            int jEnd = Math.min(cols, jj + NC);
+            for (int kk = 0; kk < inner; kk += KC) {
+                int kEnd = Math.min(inner, kk + KC);
+                int i = 0;
+                for (; i + MR <= rows; i += MR) {
+                    panel4(a, b, c, i, inner, cols, kk, kEnd, jj, jEnd);
+                }
+                for (; i < rows; i++) {
+                    panel1(a, b, c, i, inner, cols, kk, kEnd, jj, jEnd);
+                }
+            }
+        }
+    }
+
+    private static void panel4(float[] a, float[] b, float[] c, int i, int inner, int cols,
+            int kk, int kEnd, int jj, int jEnd) {
+        int a0 = i * inner;
+        int a1 = a0 + inner;
+        int a2 = a1 + inner;
+        int a3 = a2 + inner;
+        int c0 = i * cols;
+        int c1 = c0 + cols;
+        int c2 = c1 + cols;
+        int c3 = c2 + cols;
+        for (int p = kk; p < kEnd; p++) {
+            VectorKernels.axpy4(a[a0 + p], a[a1 + p], a[a2 + p], a[a3 + p], b, p * cols + jj,
+                    c, c0 + jj, c1 + jj, c2 + jj, c3 + jj, jEnd - jj);
+        }
+    }
+
+    private static void panel1(float[] a, float[] b, float[] c, int i, int inner, int cols,
+            int kk, int kEnd, int jj, int jEnd) {
+        int aRow = i * inner;
+        int cRow = i * cols;
+        for (int p = kk; p < kEnd; p++) {
+            VectorKernels.axpy(a[aRow + p], b, p * cols + jj, c, cRow + jj, jEnd - jj);
+        }
+    }
+}
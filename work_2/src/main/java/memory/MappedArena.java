@@ -0,0 +1,102 @@
+package memory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Owns the memory-mapped temp files behind MAPPED matrices.
+ * Every buffer is a tile of at most TILE_DOUBLES mapped from its own file, so a matrix can be larger
+ * than the heap and than physical memory: the OS pages tiles in and out through the page cache.
+ * The file is unlinked as soon as it is mapped, so spilled data never outlives the process;
+ * its pages are returned on release() or close().
+ */
+public class MappedArena implements BufferArena {
+
+    public static final int TILE_DOUBLES = 1 << 23; // 64 MiB per mapping
+
+    private static final BufferCleaner CLEANER = BufferCleaner.find();
+
+    private final Path directory;
+    private final Map<DoubleBuffer, MappedByteBuffer> live = new IdentityHashMap<>(); // view -> mapping
+    private boolean closed = false;
+
+    public MappedArena() {
+        this(Path.of(System.getProperty("java.io.tmpdir")));
+    }
+
+    public MappedArena(Path directory) {
+        if (directory == null || !Files.isDirectory(directory)) {
+            throw new IllegalArgumentException("Spill directory does not exist: " + directory);
+        }
+        this.directory = directory;
+    }
+
+    @Override
+    public StorageLayout getLayout() {
+        return StorageLayout.MAPPED;
+    }
+
+    @Override
+    public int maxBufferDoubles() {
+        return TILE_DOUBLES;
+    }
+
+    @Override
+    public synchronized DoubleBuffer allocate(int doubles) {
+        if (closed) {
+            throw new IllegalStateException("Arena is closed.");
+        }
+        if (doubles < 0 || doubles > TILE_DOUBLES) {
+            throw new IllegalArgumentException("Invalid mapped buffer size: " + doubles);
+        }
+        try {
+            Path file = Files.createTempFile(directory, "lae-", ".tile");
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                // the file grows to the mapped size, zero-filled; the mapping stays valid after close
+                MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) doubles * Double.BYTES);
+                DoubleBuffer view = bytes.order(ByteOrder.nativeOrder()).asDoubleBuffer();
+                live.put(view, bytes);
+                return view;
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot map a spill file in " + directory, e);
+        }
+    }
+
+    @Override
+    public synchronized void release(DoubleBuffer buffer) {
+        MappedByteBuffer bytes = live.remove(buffer);
+        if (bytes != null) {
+            CLEANER.free(bytes);
+        }
+    }
+
+    @Override
+    public synchronized long liveBytes() {
+        long total = 0;
+        for (MappedByteBuffer bytes : live.values()) {
+            total += bytes.capacity();
+        }
+        return total;
+    }
+
+    @Override
+    public synchronized void close() {
+        for (MappedByteBuffer bytes : live.values()) {
+            CLEANER.free(bytes);
+        }
+        live.clear();
+        closed = true;
+    }
+}
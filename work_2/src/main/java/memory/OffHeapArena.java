@@ -0,0 +1,74 @@
+package memory;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Owns the native memory behind OFF_HEAP matrices.
+ * Buffers are allocated outside the Java heap and freed explicitly on release() or close(),
+ * so their lifetime follows the engine run instead of the garbage collector.
+ * A buffer must not be read or written after it has been released.
+ */
+public class OffHeapArena implements BufferArena {
+
+    // Largest buffer handed out, in doubles. A direct ByteBuffer is indexed by int bytes.
+    public static final int MAX_BUFFER_DOUBLES = Integer.MAX_VALUE / Double.BYTES;
+
+    private static final BufferCleaner CLEANER = BufferCleaner.find();
+
+    private final Map<DoubleBuffer, ByteBuffer> live = new IdentityHashMap<>(); // view -> owning allocation
+    private boolean closed = false;
+
+    @Override
+    public StorageLayout getLayout() {
+        return StorageLayout.OFF_HEAP;
+    }
+
+    @Override
+    public int maxBufferDoubles() {
+        return MAX_BUFFER_DOUBLES;
+    }
+
+    @Override
+    public synchronized DoubleBuffer allocate(int doubles) {
+        if (closed) {
+            throw new IllegalStateException("Arena is closed.");
+        }
+        if (doubles < 0 || doubles > MAX_BUFFER_DOUBLES) {
+            throw new IllegalArgumentException("Invalid off-heap buffer size: " + doubles);
+        }
+        ByteBuffer bytes = ByteBuffer.allocateDirect(doubles * Double.BYTES).order(ByteOrder.nativeOrder());
+        DoubleBuffer view = bytes.asDoubleBuffer();
+        live.put(view, bytes);
+        return view;
+    }
+
+    @Override
+    public synchronized void release(DoubleBuffer buffer) {
+        ByteBuffer bytes = live.remove(buffer);
+        if (bytes != null) {
+            CLEANER.free(bytes);
+        }
+    }
+
+    @Override
+    public synchronized long liveBytes() {
+        long total = 0;
+        for (ByteBuffer bytes : live.values()) {
+            total += bytes.capacity();
+        }
+        return total;
+    }
+
+    @Override
+    public synchronized void close() {
+        for (ByteBuffer bytes : live.values()) {
+            CLEANER.free(bytes);
+        }
+        live.clear();
+        closed = true;
+    }
+}
@@ -0,0 +1,13 @@
+package memory;
+/**
+ * Determines the floating-point format of the elements of a SharedMatrix.
+ * With DOUBLE, elements are stored and computed in float64.
+ * With SINGLE, elements are stored and computed in float32, which halves the memory traffic
+ * and doubles the number of SIMD lanes.
+ * With MIXED, elements are stored in float32 but dot products and matrix products accumulate in float64.
+ */
+public enum Precision {
+    DOUBLE,
+    SINGLE,
+    MIXED
+}
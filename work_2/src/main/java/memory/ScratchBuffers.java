@@ -0,0 +1,66 @@
+package memory;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * Per-thread scratch arrays for kernels that need temporary storage on every call.
+ * Each worker thread keeps one growing array per slot, so a task reuses the buffers of the
+ * previous tasks run by the same worker instead of allocating. A buffer is only valid until the
+ * next request for the same slot on the same thread, and may be longer than requested.
+ * Threads that only live for one task, such as virtual threads, would start from empty slots every
+ * time; their tasks run through runPooled, which lends them the slots of an earlier task instead.
+ */
+public final class ScratchBuffers {
+
+    public static final int OPERAND = 0; // packed rows of a left operand
+    public static final int PRODUCT = 1; // rows of a product before they are written back
+    public static final int PANEL = 2; // rows of a right operand streamed panel by panel
+    static final int VECTOR = 3; // result of SharedVector.vecMatMul
+    private static final int SLOTS = 4;
+
+    // the scratch arrays of one thread, or of one pooled task at a time
+    private static final class Slots {
+        final double[][] doubles = new double[SLOTS][0];
+        final float[][] floats = new float[SLOTS][0];
+    }
+
+    private static final ThreadLocal<Slots> CURRENT = ThreadLocal.withInitial(Slots::new);
+    // slots not lent to any task; there are never more than tasks that ran through runPooled at once
+    private static final ConcurrentLinkedDeque<Slots> POOLED = new ConcurrentLinkedDeque<>();
+
+    private ScratchBuffers() {
+    }
+
+    // contents are stale
+    public static double[] doubles(int slot, int minLength) {
+        double[][] slots = CURRENT.get().doubles;
+        if (slots[slot].length < minLength) {
+            slots[slot] = new double[minLength];
+        }
+        return slots[slot];
+    }
+
+    public static float[] floats(int slot, int minLength) {
+        float[][] slots = CURRENT.get().floats;
+        if (slots[slot].length < minLength) {
+            slots[slot] = new float[minLength];
+        }
+        return slots[slot];
+    }
+
+    /**
+     * Runs task with scratch arrays lent from a pool shared by all threads, so that a task on a
+     * short-lived thread reuses the buffers grown by earlier tasks.
+     */
+    public static void runPooled(Runnable task) {
+        Slots lent = POOLED.pollFirst();
+        Slots previous = CURRENT.get();
+        CURRENT.set((lent == null) ? new Slots() : lent);
+        try {
+            task.run();
+        } finally {
+            POOLED.addFirst(CURRENT.get()); // most recently used first, while still in cache
+            CURRENT.set(previous);
+        }
+    }
+}
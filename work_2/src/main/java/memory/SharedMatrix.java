@@ -1,85 +1,472 @@
 package memory;
 
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
 public class SharedMatrix {
 
+    private static final int COPY_BLOCK_DOUBLES = 1 << 20; // staging block of loadRowMajor(SharedMatrix)
+
     private SharedVector[] vectors = {}; // underlying vectors
+    private final StorageLayout layout;
+    private final Precision precision;
+    private final BufferArena arena; // only used by the OFF_HEAP and MAPPED layouts
+    private DoubleBuffer[] bands = {}; // native buffers backing the vectors of an OFF_HEAP matrix
+    private AccessPhase phase = AccessPhase.SHARED;
+    private BufferPool pool; // recycles flat storage and result rows, null to always allocate
+    private double[] flat; // row-major array behind a CONTIGUOUS double matrix, null otherwise
 
     public SharedMatrix() {
+        this(StorageLayout.PER_VECTOR);
+    }
+
+    public SharedMatrix(StorageLayout layout) {
+        this(layout, Precision.DOUBLE);
+    }
+
+    public SharedMatrix(StorageLayout layout, Precision precision) {
+        if (layout == StorageLayout.OFF_HEAP || layout == StorageLayout.MAPPED) {
+            throw new IllegalArgumentException(layout + " matrices must be created with a BufferArena.");
+        }
+        if (layout == StorageLayout.TILED) {
+            throw new IllegalArgumentException("TILED matrices are stored in a TiledMatrix.");
+        }
+        this.layout = layout;
+        this.precision = precision;
+        this.arena = null;
+    }
+
+    public SharedMatrix(BufferArena arena) {
+        if (arena == null) {
+            throw new IllegalArgumentException("Arena cannot be null.");
+        }
+        this.layout = arena.getLayout();
+        this.precision = Precision.DOUBLE;
+        this.arena = arena;
     }
 
     public SharedMatrix(double[][] matrix) {
+        this();
+        loadRowMajor(matrix);
+    }
+
+    public SharedMatrix(double[][] matrix, StorageLayout layout) {
+        this(layout);
         loadRowMajor(matrix);
     }
 
+    public StorageLayout getLayout() {
+        return layout;
+    }
+
+    public Precision getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Makes the matrix take its flat storage and readRowMajor rows from pool, and hand the
+     * flat storage back to it when reloaded. Arrays returned by readRowMajor belong to the caller,
+     * who may release them to the same pool once they are dead. As with OFF_HEAP storage, vectors
+     * obtained from this matrix must not be used after it is reloaded.
+     */
+    public void setBufferPool(BufferPool pool) {
+        this.pool = pool;
+    }
+
     public void loadRowMajor(double[][] matrix) {
+        requireSharedPhase();
         // Create new vectors, one per row
         acquireAllVectorWriteLocks(vectors);
         SharedVector[] newVectors = new SharedVector[matrix.length];
-        for (int i = 0; i < matrix.length; i++) {
-            newVectors[i] = new SharedVector(matrix[i], VectorOrientation.ROW_MAJOR);
+        DoubleBuffer[] newBands = {};
+        double[] newFlat = null;
+        if (arena != null) {
+            newBands = loadBands(matrix, newVectors, VectorOrientation.ROW_MAJOR);
+        } else if (precision != Precision.DOUBLE) {
+            loadSingle(matrix, newVectors, VectorOrientation.ROW_MAJOR);
+        } else if (layout == StorageLayout.CONTIGUOUS) {
+            // one row-major buffer, every vector is a row view into it
+            newFlat = flatten(matrix);
+            int numCols = (matrix.length == 0) ? 0 : matrix[0].length;
+            for (int row = 0; row < matrix.length; row++) {
+                newVectors[row] = new SharedVector(newFlat, row * numCols, 1, numCols, VectorOrientation.ROW_MAJOR);
+            }
+        } else {
+            for (int i = 0; i < matrix.length; i++) {
+                newVectors[i] = new SharedVector(matrix[i], VectorOrientation.ROW_MAJOR);
+            }
         }
         SharedVector[] oldVectors = this.vectors;
         // Replace
         this.vectors = newVectors;
+        releaseBands(newBands);
+        releaseFlat(newFlat);
         releaseAllVectorWriteLocks(oldVectors);
     }
 
     public void loadColumnMajor(double[][] matrix) {
+        requireSharedPhase();
         acquireAllVectorWriteLocks(vectors);
 
         int numRows = matrix.length;
         int numCols = matrix[0].length;
         SharedVector[] newVectors = new SharedVector[numCols];
-        for (int col = 0; col < numCols; col++) {
-            double[] columnData = new double[numRows];
-            for (int row = 0; row < numRows; row++) {
-                columnData[row] = matrix[row][col];
+        DoubleBuffer[] newBands = {};
+        double[] newFlat = null;
+        if (arena != null) {
+            newBands = loadBands(matrix, newVectors, VectorOrientation.COLUMN_MAJOR);
+        } else if (precision != Precision.DOUBLE) {
+            loadSingle(matrix, newVectors, VectorOrientation.COLUMN_MAJOR);
+        } else if (layout == StorageLayout.CONTIGUOUS) {
+            // the data stays row-major; every vector is a strided column view into it
+            newFlat = flatten(matrix);
+            for (int col = 0; col < numCols; col++) {
+                newVectors[col] = new SharedVector(newFlat, col, numCols, numRows, VectorOrientation.COLUMN_MAJOR);
+            }
+        } else {
+            for (int col = 0; col < numCols; col++) {
+                double[] columnData = new double[numRows];
+                for (int row = 0; row < numRows; row++) {
+                    columnData[row] = matrix[row][col];
+                }
+                newVectors[col] = new SharedVector(columnData, VectorOrientation.COLUMN_MAJOR);
             }
-            newVectors[col] = new SharedVector(columnData, VectorOrientation.COLUMN_MAJOR);
         }
         SharedVector[] oldVectors = this.vectors;
         this.vectors = newVectors;
+        releaseBands(newBands);
+        releaseFlat(newFlat);
         releaseAllVectorWriteLocks(oldVectors);
     }
 
-    public double[][] readRowMajor() {
-        acquireAllVectorReadLocks(vectors);
+    /**
+     * Same as loadRowMajor, except that a PER_VECTOR double matrix takes ownership of the rows
+     * instead of copying them, so the caller must not use them afterwards. Other layouts copy the
+     * rows into their own storage anyway.
+     */
+    public void adoptRowMajor(double[][] matrix) {
+        if (arena != null || precision != Precision.DOUBLE || layout != StorageLayout.PER_VECTOR) {
+            loadRowMajor(matrix);
+            return;
+        }
+        requireSharedPhase();
+        acquireAllVectorWriteLocks(vectors);
+        SharedVector[] newVectors = new SharedVector[matrix.length];
+        for (int i = 0; i < matrix.length; i++) {
+            newVectors[i] = new SharedVector(matrix[i], 0, 1, matrix[i].length, VectorOrientation.ROW_MAJOR);
+        }
+        SharedVector[] oldVectors = this.vectors;
+        this.vectors = newVectors;
+        releaseBands(new DoubleBuffer[0]);
+        releaseFlat(null);
+        releaseAllVectorWriteLocks(oldVectors);
+    }
+
+    /**
+     * Loads the transpose of matrix without moving any element: the rows of matrix are stored as
+     * they are and become the column vectors of this matrix.
+     */
+    public void loadTransposed(double[][] matrix) {
+        loadRowMajor(matrix);
+        transpose();
+    }
+
+    /**
+     * Transposes the matrix in O(1) per vector: every vector switches orientation, so rows become
+     * columns and no element is moved. Kernels that need the other orientation either consume it as
+     * it is or call relayout.
+     */
+    public void transpose() {
+        requireSharedPhase();
+        for (SharedVector v : vectors) {
+            v.transpose();
+        }
+    }
 
+    /**
+     * Moves the elements so that the vectors take the given orientation, with a blocked transpose.
+     * Does nothing if they already have it. The represented matrix is unchanged.
+     */
+    public void relayout(VectorOrientation orientation) {
+        if (vectors.length == 0 || getOrientation() == orientation) {
+            return;
+        }
+        int count = vectors.length;
+        int width = vectors[0].length();
+        double[] packed = packVectors();
+        double[] swapped = new double[packed.length];
+        TransposeKernel.transpose(packed, count, width, swapped);
+        double[][] newVectors = new double[width][];
+        for (int i = 0; i < width; i++) {
+            newVectors[i] = Arrays.copyOfRange(swapped, i * count, (i + 1) * count);
+        }
+        loadRowMajor(newVectors);
+        if (orientation == VectorOrientation.COLUMN_MAJOR) {
+            transpose();
+        }
+    }
+
+    /**
+     * Replaces the contents with a rows x cols matrix of zeros, stored row by row.
+     */
+    public void loadEmpty(int rows, int cols) {
+        if (arena == null) {
+            loadRowMajor(new double[rows][cols]);
+            return;
+        }
+        requireSharedPhase();
+        acquireAllVectorWriteLocks(vectors);
+        SharedVector[] newVectors = new SharedVector[rows];
+        DoubleBuffer[] newBands = allocateBands(newVectors, cols, VectorOrientation.ROW_MAJOR);
+        SharedVector[] oldVectors = this.vectors;
+        this.vectors = newVectors;
+        releaseBands(newBands);
+        releaseFlat(null);
+        releaseAllVectorWriteLocks(oldVectors);
+    }
+
+    /**
+     * Copies source into this matrix, stored row by row. The copy goes through a bounded block of
+     * rows at a time, so matrices larger than the heap are never materialized as a double[][].
+     */
+    public void loadRowMajor(SharedMatrix source) {
+        int numRows = source.rowCount();
+        int numCols = source.columnCount();
+        loadEmpty(numRows, numCols);
+        int blockRows = Math.max(1, Math.min(numRows, COPY_BLOCK_DOUBLES / Math.max(1, numCols)));
+        double[] block = new double[blockRows * numCols];
+        for (int from = 0; from < numRows; from += blockRows) {
+            int to = Math.min(numRows, from + blockRows);
+            source.readRowBlock(from, to, block);
+            writeRows(from, to, block, numCols);
+        }
+    }
+
+    /**
+     * Drops all vectors. For OFF_HEAP and MAPPED matrices the memory goes back to the arena,
+     * so vectors obtained from this matrix must not be used afterwards.
+     */
+    public void unload() {
+        requireSharedPhase();
+        acquireAllVectorWriteLocks(vectors);
+        SharedVector[] oldVectors = this.vectors;
+        this.vectors = new SharedVector[0];
+        releaseBands(new DoubleBuffer[0]);
+        releaseFlat(null);
+        releaseAllVectorWriteLocks(oldVectors);
+    }
+
+    /**
+     * Switches every vector to the given access phase. PARTITIONED and FROZEN let kernels skip the
+     * per-vector locks, on the promise that tasks own disjoint vectors or only read. Must be called
+     * while no task is using the matrix, e.g. before submitting a batch and after it completes.
+     */
+    public void enterPhase(AccessPhase phase) {
+        for (SharedVector v : vectors) {
+            v.setPhase(phase);
+        }
+        this.phase = phase;
+    }
+
+    public AccessPhase getPhase() {
+        return phase;
+    }
+
+    public double[][] readRowMajor() {
         // If already in ROW_MAJOR, extract rows
         if (getOrientation() == VectorOrientation.ROW_MAJOR) {
+            return readVectors();
+        }
+        // if is in COLUMN_MAJOR: need to transpose
+        int numRows = rowCount();
+        int numCols = columnCount();
+        double[] packed = packRowMajor();
+        double[][] result = new double[numRows][];
+        for (int row = 0; row < numRows; row++) {
+            result[row] = allocate(numCols);
+            System.arraycopy(packed, row * numCols, result[row], 0, numCols);
+        }
+        return result;
+    }
+
+    /**
+     * Copies out the vectors as they are stored, one array each. For a COLUMN_MAJOR matrix these
+     * are the rows of its transpose.
+     */
+    public double[][] readVectors() {
+        acquireAllVectorReadLocks(vectors);
+        try {
             double[][] result = new double[vectors.length][];
             for (int i = 0; i < vectors.length; i++) {
-                result[i] = new double[vectors[i].length()];
-                for (int j = 0; j < vectors[i].length(); j++) {
-                    result[i][j] = vectors[i].get(j);
-                }
+                result[i] = allocate(vectors[i].length());
+                vectors[i].copyTo(result[i], 0);
             }
-            releaseAllVectorReadLocks(vectors);
             return result;
+        } finally {
+            releaseAllVectorReadLocks(vectors);
         }
-        // if is in COLUMN_MAJOR: need to transpose
-        else {
-            int numCols = vectors.length;
-            int numRows = vectors[0].length();
-            double[][] result = new double[numRows][numCols];
+    }
 
-            for (int col = 0; col < numCols; col++) {
-                for (int row = 0; row < numRows; row++) {
-                    result[row][col] = vectors[col].get(row);
+    /**
+     * Returns a private row-major copy of the whole matrix (rowCount x columnCount), so that kernels
+     * can read the operand without taking any lock.
+     */
+    public double[] packRowMajor() {
+        double[] packed = packVectors();
+        if (getOrientation() == VectorOrientation.ROW_MAJOR) {
+            return packed;
+        }
+        double[] rows = new double[packed.length];
+        TransposeKernel.transpose(packed, columnCount(), rowCount(), rows);
+        return rows;
+    }
+
+    /**
+     * Returns a private column-major copy of the whole matrix, i.e. the row-major form of its
+     * transpose (columnCount x rowCount). Free of any transpose for a COLUMN_MAJOR matrix.
+     */
+    public double[] packColumnMajor() {
+        double[] packed = packVectors();
+        if (getOrientation() == VectorOrientation.COLUMN_MAJOR) {
+            return packed;
+        }
+        double[] columns = new double[packed.length];
+        TransposeKernel.transpose(packed, rowCount(), columnCount(), columns);
+        return columns;
+    }
+
+    // the vectors back to back, as they are stored
+    private double[] packVectors() {
+        acquireAllVectorReadLocks(vectors);
+        try {
+            int width = (vectors.length == 0) ? 0 : vectors[0].length();
+            double[] packed = new double[vectors.length * width];
+            for (int i = 0; i < vectors.length; i++) {
+                if (vectors[i].length() != width) {
+                    throw new IllegalArgumentException("All rows must have the same length.");
                 }
+                vectors[i].copyTo(packed, i * width);
             }
+            return packed;
+        } finally {
             releaseAllVectorReadLocks(vectors);
-            return result;
         }
     }
 
-    public SharedVector get(int index) {
-        this.vectors[index].readLock();
+    /**
+     * Single-precision version of {@link #packRowMajor()}, for the float32 kernels.
+     */
+    public float[] packRowMajorFloats() {
+        acquireAllVectorReadLocks(vectors);
         try {
-            return this.vectors[index];
+            int numRows = rowCount();
+            int numCols = columnCount();
+            float[] packed = new float[numRows * numCols];
+            if (getOrientation() == VectorOrientation.ROW_MAJOR) {
+                for (int row = 0; row < numRows; row++) {
+                    vectors[row].copyTo(packed, row * numCols);
+                }
+            } else {
+                float[] columns = new float[numRows * numCols];
+                for (int col = 0; col < numCols; col++) {
+                    vectors[col].copyTo(columns, col * numRows);
+                }
+                TransposeKernel.transpose(columns, numCols, numRows, packed);
+            }
+            return packed;
         } finally {
-            this.vectors[index].readUnlock();
+            releaseAllVectorReadLocks(vectors);
+        }
+    }
+
+    // rows [from, to) of the represented matrix, back to back into dst, whatever the orientation
+    private void readRowBlock(int from, int to, double[] dst) {
+        if (getOrientation() == VectorOrientation.ROW_MAJOR) {
+            readRows(from, to, dst);
+            return;
+        }
+        int numCols = vectors.length;
+        for (int col = 0; col < numCols; col++) {
+            SharedVector column = vectors[col];
+            column.readLock();
+            try {
+                column.copyRangeTo(from, to - from, dst, col, numCols);
+            } finally {
+                column.readUnlock();
+            }
+        }
+    }
+
+    /**
+     * Copies vectors [from, to) back to back into dst. All of them must have the same length.
+     */
+    public void readRows(int from, int to, double[] dst) {
+        int width = (from < to) ? vectors[from].length() : 0;
+        for (int i = from; i < to; i++) {
+            SharedVector vector = vectors[i];
+            vector.readLock();
+            try {
+                if (vector.length() != width) {
+                    throw new IllegalArgumentException("All rows must have the same length.");
+                }
+                vector.copyTo(dst, (i - from) * width);
+            } finally {
+                vector.readUnlock();
+            }
+        }
+    }
+
+    // float32 version of readRows
+    public void readRows(int from, int to, float[] dst) {
+        int width = (from < to) ? vectors[from].length() : 0;
+        for (int i = from; i < to; i++) {
+            SharedVector vector = vectors[i];
+            vector.readLock();
+            try {
+                if (vector.length() != width) {
+                    throw new IllegalArgumentException("All rows must have the same length.");
+                }
+                vector.copyTo(dst, (i - from) * width);
+            } finally {
+                vector.readUnlock();
+            }
+        }
+    }
+
+    /**
+     * Replaces vectors [from, to) with consecutive rows of width elements taken from src.
+     */
+    public void writeRows(int from, int to, double[] src, int width) {
+        for (int i = from; i < to; i++) {
+            vectors[i].assignRow(src, (i - from) * width, width);
+        }
+    }
+
+    // float32 version of writeRows
+    public void writeRows(int from, int to, float[] src, int width) {
+        for (int i = from; i < to; i++) {
+            vectors[i].assignRow(src, (i - from) * width, width);
+        }
+    }
+
+    // number of rows of the represented matrix, whatever the orientation of its vectors
+    public int rowCount() {
+        if (vectors.length == 0) {
+            return 0;
+        }
+        return (getOrientation() == VectorOrientation.ROW_MAJOR) ? vectors.length : vectors[0].length();
+    }
+
+    // number of columns of the represented matrix, whatever the orientation of its vectors
+    public int columnCount() {
+        if (vectors.length == 0) {
+            return 0;
         }
+        return (getOrientation() == VectorOrientation.ROW_MAJOR) ? vectors[0].length() : vectors.length;
+    }
+
+    public SharedVector get(int index) {
+        return this.vectors[index];
     }
 
     public int length() {
@@ -90,6 +477,153 @@ public class SharedMatrix {
         return (vectors.length == 0) ? VectorOrientation.ROW_MAJOR : vectors[0].getOrientation();
     }
 
+    private void requireSharedPhase() {
+        if (phase != AccessPhase.SHARED) {
+            throw new IllegalStateException("Matrix cannot be reloaded during the " + phase + " phase.");
+        }
+    }
+
+    // Copies the rows (or columns) of matrix into arena buffers, one stride-1 vector each.
+    private DoubleBuffer[] loadBands(double[][] matrix, SharedVector[] newVectors, VectorOrientation orientation) {
+        int numRows = matrix.length;
+        int numCols = (numRows == 0) ? 0 : matrix[0].length;
+        for (double[] row : matrix) {
+            if (row.length != numCols) {
+                throw new IllegalArgumentException("All matrix rows must have the same length.");
+            }
+        }
+        boolean byRow = (orientation == VectorOrientation.ROW_MAJOR);
+        int vectorLength = byRow ? numCols : numRows;
+        DoubleBuffer[] newBands = allocateBands(newVectors, vectorLength, orientation);
+        double[] column = byRow ? null : new double[numRows];
+        for (int index = 0; index < newVectors.length; index++) {
+            if (byRow) {
+                newVectors[index].fill(matrix[index], 0);
+            } else {
+                for (int row = 0; row < numRows; row++) {
+                    column[row] = matrix[row][index];
+                }
+                newVectors[index].fill(column, 0);
+            }
+        }
+        return newBands;
+    }
+
+    // Allocates one zeroed stride-1 vector per entry of newVectors from the arena. Vectors are packed
+    // into bands (row tiles for MAPPED) so that no single buffer exceeds the arena's limit.
+    private DoubleBuffer[] allocateBands(SharedVector[] newVectors, int vectorLength, VectorOrientation orientation) {
+        int maxDoubles = arena.maxBufferDoubles();
+        if (vectorLength > maxDoubles) {
+            throw new IllegalArgumentException("Vectors of " + vectorLength + " elements exceed the "
+                    + maxDoubles + " element buffers of the " + layout + " layout.");
+        }
+        int perBand = (vectorLength == 0) ? Math.max(1, newVectors.length) : Math.max(1, maxDoubles / vectorLength);
+        DoubleBuffer[] newBands = new DoubleBuffer[(newVectors.length + perBand - 1) / perBand];
+        try {
+            for (int b = 0; b < newBands.length; b++) {
+                int first = b * perBand;
+                int count = Math.min(perBand, newVectors.length - first);
+                DoubleBuffer band = arena.allocate(count * vectorLength);
+                newBands[b] = band;
+                for (int k = 0; k < count; k++) {
+                    newVectors[first + k] = new SharedVector(band, k * vectorLength, 1, vectorLength, orientation);
+                }
+            }
+        } catch (RuntimeException e) {
+            for (DoubleBuffer band : newBands) {
+                if (band != null) {
+                    arena.release(band);
+                }
+            }
+            throw e;
+        }
+        return newBands;
+    }
+
+    // Rounds the rows (or columns) of matrix to float32. CONTIGUOUS matrices share one row-major
+    // array like their double counterparts, PER_VECTOR ones get one array per vector.
+    private void loadSingle(double[][] matrix, SharedVector[] newVectors, VectorOrientation orientation) {
+        int numRows = matrix.length;
+        int numCols = (numRows == 0) ? 0 : matrix[0].length;
+        boolean byRow = (orientation == VectorOrientation.ROW_MAJOR);
+        if (layout == StorageLayout.CONTIGUOUS) {
+            float[] data = flattenFloats(matrix);
+            for (int i = 0; i < newVectors.length; i++) {
+                newVectors[i] = byRow ? new SharedVector(data, i * numCols, 1, numCols, orientation, precision)
+                        : new SharedVector(data, i, numCols, numRows, orientation, precision);
+            }
+            return;
+        }
+        for (double[] row : matrix) {
+            if (row.length != numCols) {
+                throw new IllegalArgumentException("All matrix rows must have the same length.");
+            }
+        }
+        for (int i = 0; i < newVectors.length; i++) {
+            float[] data = new float[byRow ? numCols : numRows];
+            for (int k = 0; k < data.length; k++) {
+                data[k] = (float) (byRow ? matrix[i][k] : matrix[k][i]);
+            }
+            newVectors[i] = new SharedVector(data, 0, 1, data.length, orientation, precision);
+        }
+    }
+
+    // hands the current flat storage back to the pool and keeps newFlat instead
+    private void releaseFlat(double[] newFlat) {
+        if (pool != null && flat != null) {
+            pool.release(flat);
+        }
+        flat = newFlat;
+    }
+
+    private double[] allocate(int length) {
+        return (pool == null) ? new double[length] : pool.acquire(length);
+    }
+
+    // hands the current native buffers back to the arena and keeps newBands instead
+    private void releaseBands(DoubleBuffer[] newBands) {
+        for (DoubleBuffer band : bands) {
+            arena.release(band);
+        }
+        bands = newBands;
+    }
+
+    // copies a rectangular matrix into a single row-major array
+    private double[] flatten(double[][] matrix) {
+        int numRows = matrix.length;
+        int numCols = (numRows == 0) ? 0 : matrix[0].length;
+        if ((long) numRows * numCols > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Matrix is too large for contiguous storage.");
+        }
+        double[] data = allocate(numRows * numCols);
+        for (int row = 0; row < numRows; row++) {
+            if (matrix[row].length != numCols) {
+                throw new IllegalArgumentException("All matrix rows must have the same length.");
+            }
+            System.arraycopy(matrix[row], 0, data, row * numCols, numCols);
+        }
+        return data;
+    }
+
+    // float32 version of flatten
+    private static float[] flattenFloats(double[][] matrix) {
+        int numRows = matrix.length;
+        int numCols = (numRows == 0) ? 0 : matrix[0].length;
+        if ((long) numRows * numCols > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Matrix is too large for contiguous storage.");
+        }
+        float[] data = new float[numRows * numCols];
+        for (int row = 0; row < numRows; row++) {
+            if (matrix[row].length != numCols) {
+                throw new IllegalArgumentException("All matrix rows must have the same length.");
+            }
+            for (int col = 0; col < numCols; col++) {
+                data[row * numCols + col] = (float) matrix[row][col];
+            }
+        }
+        return data;
+    }
+
     private void acquireAllVectorReadLocks(SharedVector[] vecs) {
         for (SharedVector v : vecs) {
             v.readLock();
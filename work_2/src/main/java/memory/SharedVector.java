@@ -1,38 +1,116 @@
 package memory;
 
-import java.util.concurrent.locks.ReadWriteLock;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.locks.StampedLock;
 
 public class SharedVector {
 
-    private double[] vector;
+    private double[] vector; // backing array, possibly shared with other views of the same matrix
+    private DoubleBuffer buffer; // off-heap backing, used instead of vector when not null
+    private float[] floats; // single-precision backing, used instead of vector when not null
+    private boolean wideAccumulator; // float32 dot products accumulate in float64 (Precision.MIXED)
+    private int offset; // position of element 0 inside the backing array
+    private int stride; // distance between two consecutive elements inside the backing array
+    private int length;
     private VectorOrientation orientation;
-    private ReadWriteLock lock = new java.util.concurrent.locks.ReentrantReadWriteLock();
+    // Readers validate an optimistic stamp instead of taking the read lock, so the hot read paths
+    // never write the lock word. The lock is not reentrant: a thread holding it must not take it again.
+    private final StampedLock lock = new StampedLock();
+    // Set by the owning matrix between batches of tasks; the executor's hand-off publishes it.
+    private AccessPhase phase = AccessPhase.SHARED;
 
     public SharedVector(double[] vector, VectorOrientation orientation) {
         this.vector = new double[vector.length];
         System.arraycopy(vector, 0, this.vector, 0, vector.length);
+        this.offset = 0;
+        this.stride = 1;
+        this.length = vector.length;
         this.orientation = orientation;
     }
 
+    /**
+     * Creates a view over {@code length} elements of {@code data}, starting at {@code offset} and
+     * {@code stride} elements apart. The array is not copied: every view over the same array sees
+     * the writes of the others.
+     */
+    SharedVector(double[] data, int offset, int stride, int length, VectorOrientation orientation) {
+        this.vector = data;
+        this.offset = offset;
+        this.stride = stride;
+        this.length = length;
+        this.orientation = orientation;
+    }
+
+    // Same as above, over an off-heap buffer.
+    SharedVector(DoubleBuffer data, int offset, int stride, int length, VectorOrientation orientation) {
+        this.buffer = data;
+        this.offset = offset;
+        this.stride = stride;
+        this.length = length;
+        this.orientation = orientation;
+    }
+
+    // Same as above, over a float32 array. With the MIXED precision dot products accumulate in float64.
+    SharedVector(float[] data, int offset, int stride, int length, VectorOrientation orientation, Precision precision) {
+        this.floats = data;
+        this.offset = offset;
+        this.stride = stride;
+        this.length = length;
+        this.orientation = orientation;
+        this.wideAccumulator = (precision == Precision.MIXED);
+    }
+
     public double get(int index) {
+        if (phase != AccessPhase.SHARED) {
+            return load(offset + Objects.checkIndex(index, length) * stride);
+        }
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            try {
+                double value = load(offset + Objects.checkIndex(index, length) * stride);
+                if (lock.validate(stamp)) {
+                    return value;
+                }
+            } catch (RuntimeException e) {
+                // possibly torn by a concurrent write: retried under the read lock
+            }
+        }
         this.readLock();
         try {
-            return vector[index];
+            return load(offset + Objects.checkIndex(index, length) * stride);
         } finally {
             this.readUnlock();
         }
     }
 
     public int length() {
+        if (phase != AccessPhase.SHARED) {
+            return length;
+        }
+        long stamp = lock.tryOptimisticRead();
+        int size = this.length;
+        if (lock.validate(stamp)) {
+            return size;
+        }
         this.readLock();
         try {
-            return vector.length;
+            return length;
         } finally {
             this.readUnlock();
         }
     }
 
     public VectorOrientation getOrientation() {
+        if (phase != AccessPhase.SHARED) {
+            return orientation;
+        }
+        long stamp = lock.tryOptimisticRead();
+        VectorOrientation current = this.orientation;
+        if (lock.validate(stamp)) {
+            return current;
+        }
         this.readLock();
         try {
             return this.orientation;
@@ -41,20 +119,119 @@ public class SharedVector {
         }
     }
 
+    // The lock methods do nothing outside the SHARED phase. Taking the write lock of a FROZEN
+    // vector fails instead, since every write starts with it.
     public void writeLock() {
-        lock.writeLock().lock();
+        if (phase == AccessPhase.FROZEN) {
+            throw new IllegalStateException("Vector is read-only during this phase.");
+        }
+        if (phase == AccessPhase.SHARED) {
+            lock.asWriteLock().lock();
+        }
     }
 
     public void writeUnlock() {
-        lock.writeLock().unlock();
+        if (phase == AccessPhase.SHARED) {
+            lock.asWriteLock().unlock();
+        }
     }
 
     public void readLock() {
-        lock.readLock().lock();
+        if (phase == AccessPhase.SHARED) {
+            lock.asReadLock().lock();
+        }
     }
 
     public void readUnlock() {
-        lock.readLock().unlock();
+        if (phase == AccessPhase.SHARED) {
+            lock.asReadLock().unlock();
+        }
+    }
+
+    public AccessPhase getPhase() {
+        return phase;
+    }
+
+    // Caller must ensure that no other thread is using the vector.
+    void setPhase(AccessPhase phase) {
+        this.phase = phase;
+    }
+
+    // false when the vector can be read without locking or validation
+    private boolean isGuarded() {
+        return phase == AccessPhase.SHARED;
+    }
+
+    public boolean isOffHeap() {
+        return buffer != null;
+    }
+
+    public boolean isSinglePrecision() {
+        return floats != null;
+    }
+
+    // raw element at position p of the backing storage
+    private double load(int p) {
+        if (vector != null) {
+            return vector[p];
+        }
+        return (floats != null) ? floats[p] : buffer.get(p);
+    }
+
+    // stores value at position p, rounded to float32 when the backing storage is single precision
+    private void put(int p, double value) {
+        if (vector != null) {
+            vector[p] = value;
+        } else if (floats != null) {
+            floats[p] = (float) value;
+        } else {
+            buffer.put(p, value);
+        }
+    }
+
+    // copies the elements into dst starting at dstOffset. Caller must hold at least the read lock.
+    void copyTo(double[] dst, int dstOffset) {
+        if (stride == 1 && vector != null) {
+            System.arraycopy(vector, offset, dst, dstOffset, length);
+        } else if (stride == 1 && buffer != null) {
+            buffer.get(offset, dst, dstOffset, length);
+        } else {
+            for (int i = 0, p = offset; i < length; i++, p += stride) {
+                dst[dstOffset + i] = load(p);
+            }
+        }
+    }
+
+    // copies count elements starting at index from into dst[dstOffset], dst[dstOffset + dstStride], ...
+    // Caller must hold at least the read lock.
+    void copyRangeTo(int from, int count, double[] dst, int dstOffset, int dstStride) {
+        Objects.checkFromIndexSize(from, count, length);
+        for (int i = 0, p = offset + from * stride; i < count; i++, p += stride) {
+            dst[dstOffset + i * dstStride] = load(p);
+        }
+    }
+
+    // overwrites the elements with length values of src, leaving the orientation alone. Only for
+    // vectors that no other thread can see yet.
+    void fill(double[] src, int srcOffset) {
+        if (stride == 1 && buffer != null) {
+            buffer.put(offset, src, srcOffset, length);
+        } else {
+            for (int i = 0, p = offset; i < length; i++, p += stride) {
+                put(p, src[srcOffset + i]);
+            }
+        }
+    }
+
+    // copies the elements into dst rounded to float32. Caller must hold at least the read lock.
+    void copyTo(float[] dst, int dstOffset) {
+        if (stride == 1 && floats != null) {
+            System.arraycopy(floats, offset, dst, dstOffset, length);
+        } else {
+            for (int i = 0, p = offset; i < length; i++, p += stride) {
+                dst[dstOffset + i] = (float) load(p);
+            }
+        }
     }
 
     // transposes the vector (row to column or column to row).
@@ -70,29 +247,46 @@ public class SharedVector {
 
     // adds another vector to this vector.
     public void add(SharedVector other) {
-        int size = this.vector.length;
-        if (size != other.vector.length) {
+        int size = this.length;
+        if (size != other.length) {
             throw new IllegalArgumentException("Vectors must be of the same length to add.");
         }
         this.writeLock();
-        other.readLock();
+        if (other != this) {
+            other.readLock();
+        }
         try {
-            for (int i = 0; i < size; i++) {
-                this.vector[i] += other.vector[i];
+            boolean unitStride = (this.stride == 1 && other.stride == 1);
+            if (unitStride && this.vector != null && other.vector != null) {
+                VectorKernels.add(this.vector, this.offset, other.vector, other.offset, size);
+            } else if (unitStride && this.floats != null && other.floats != null) {
+                VectorKernels.add(this.floats, this.offset, other.floats, other.offset, size);
+            } else {
+                for (int i = 0, p = this.offset, q = other.offset; i < size; i++, p += this.stride, q += other.stride) {
+                    this.put(p, this.load(p) + other.load(q));
+                }
             }
         } finally {
-            other.readUnlock();
+            if (other != this) {
+                other.readUnlock();
+            }
             this.writeUnlock();
         }
     }
 
     // negates the vector.
     public void negate() {
-        int size = this.vector.length;
+        int size = this.length;
         this.writeLock();
         try {
-            for (int i = 0; i < size; i++) {
-                this.vector[i] = -this.vector[i];
+            if (vector != null && stride == 1) {
+                VectorKernels.negate(this.vector, offset, size);
+            } else if (floats != null && stride == 1) {
+                VectorKernels.negate(this.floats, offset, size);
+            } else {
+                for (int i = 0, p = offset; i < size; i++, p += stride) {
+                    this.put(p, -this.load(p));
+                }
             }
         } finally {
             this.writeUnlock();
@@ -101,24 +295,69 @@ public class SharedVector {
 
     // multiplies the vector by another vector (dot product).
     public double dot(SharedVector other) {
-        int size = this.vector.length;
+        if (!this.isGuarded() && !other.isGuarded()) {
+            if (this.length != other.length) {
+                throw new IllegalArgumentException("Vectors must be of the same length to compute dot product.");
+            }
+            return dotUnlocked(other);
+        }
+        long stamp = this.lock.tryOptimisticRead();
+        long otherStamp = other.lock.tryOptimisticRead();
+        if (stamp != 0L && otherStamp != 0L) {
+            try {
+                if (this.length == other.length) {
+                    double result = dotUnlocked(other);
+                    if (this.lock.validate(stamp) && other.lock.validate(otherStamp)) {
+                        return result;
+                    }
+                }
+            } catch (RuntimeException e) {
+                // possibly torn by a concurrent write: retried under the read locks
+            }
+        }
         this.readLock();
-        other.readLock();
-        if (size != other.vector.length) {
-            throw new IllegalArgumentException("Vectors must be of the same length to compute dot product.");
+        if (other != this) {
+            other.readLock();
         }
         try {
-            double result = 0.0;
-            for (int i = 0; i < size; i++) {
-                result += this.vector[i] * other.vector[i];
+            int size = this.length;
+            if (size != other.length) {
+                throw new IllegalArgumentException("Vectors must be of the same length to compute dot product.");
             }
-            return result;
+            return dotUnlocked(other);
         } finally {
-            other.readUnlock();
+            if (other != this) {
+                other.readUnlock();
+            }
             this.readUnlock();
         }
     }
 
+    // dot product over the raw views. Caller must hold the read locks of both vectors.
+    private double dotUnlocked(SharedVector other) {
+        double[] a = this.vector;
+        double[] b = other.vector;
+        if (a != null && b != null && this.stride == 1 && other.stride == 1) {
+            return VectorKernels.dot(a, this.offset, b, other.offset, length);
+        }
+        if (this.floats != null && other.floats != null && this.stride == 1 && other.stride == 1) {
+            return (this.wideAccumulator || other.wideAccumulator)
+                    ? VectorKernels.dotWide(this.floats, this.offset, other.floats, other.offset, length)
+                    : VectorKernels.dot(this.floats, this.offset, other.floats, other.offset, length);
+        }
+        double result = 0.0;
+        if (a != null && b != null) {
+            for (int i = 0, p = this.offset, q = other.offset; i < length; i++, p += this.stride, q += other.stride) {
+                result += a[p] * b[q];
+            }
+        } else {
+            for (int i = 0, p = this.offset, q = other.offset; i < length; i++, p += this.stride, q += other.stride) {
+                result += this.load(p) * other.load(q);
+            }
+        }
+        return result;
+    }
+
     public void vecMatMul(SharedMatrix matrix) {
         if (matrix == null || matrix.length() == 0 || matrix.get(0).length() == 0) {
             throw new IllegalArgumentException("Matrix cannot be empty for multiplication.");
@@ -126,45 +365,169 @@ public class SharedVector {
         if (this.orientation != VectorOrientation.ROW_MAJOR) {
             throw new IllegalArgumentException("Vector must be in row-major orientation for multiplication.");
         }
-        this.writeLock();
-        int rows;
-        int cols;
-        double[] result;
+        // the shape is read before locking: this vector may be one of the vectors of matrix
         boolean isRowMajor = (matrix.getOrientation() == VectorOrientation.ROW_MAJOR);
+        int rows = isRowMajor ? matrix.length() : matrix.get(0).length();
+        int cols = isRowMajor ? matrix.get(0).length() : matrix.length();
+        this.writeLock();
         try {
-            if (isRowMajor) {
-                rows = matrix.length();
-                if (this.vector.length != rows) {
-                    throw new IllegalArgumentException("Vector length must match matrix row count for multiplication.");
+            if (this.length != rows) {
+                throw new IllegalArgumentException("Vector length must match matrix row count for multiplication.");
+            }
+            // a result of unchanged length is copied into the view, so it can live in a scratch buffer
+            double[] result = (cols == this.length) ? ScratchBuffers.doubles(ScratchBuffers.VECTOR, cols)
+                    : new double[cols];
+            if (!product(matrix, rows, cols, isRowMajor, new long[isRowMajor ? rows : cols], result)) {
+                product(matrix, rows, cols, isRowMajor, null, result);
+            }
+            store(result, cols);
+            this.orientation = VectorOrientation.ROW_MAJOR;
+        } finally {
+            this.writeUnlock();
+        }
+    }
+
+    // result[0..cols) = this * matrix. With stamps, the vectors of matrix are read optimistically and
+    // false is returned when a concurrent write may have torn the result; without, they are read under
+    // their read locks. Caller must hold the write lock of this vector.
+    private boolean product(SharedMatrix matrix, int rows, int cols, boolean isRowMajor, long[] stamps,
+            double[] result) {
+        Arrays.fill(result, 0, cols, 0.0);
+        int count = isRowMajor ? rows : cols;
+        try {
+            for (int i = 0; i < count; i++) {
+                SharedVector v = matrix.get(i);
+                boolean guarded = (v != this && v.isGuarded());
+                boolean locked = (stamps == null && guarded);
+                if (stamps != null && guarded && (stamps[i] = v.lock.tryOptimisticRead()) == 0L) {
+                    return false;
+                }
+                if (locked) {
+                    v.readLock();
+                }
+                try {
+                    if (isRowMajor) {
+                        // stream the matrix row by row: result += x[i] * row(i)
+                        axpyInto(this.load(this.offset + i * this.stride), v, result, cols);
+                    } else {
+                        result[i] = this.dotUnlocked(v);
+                    }
+                } finally {
+                    if (locked) {
+                        v.readUnlock();
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            if (stamps == null) {
+                throw e;
+            }
+            return false; // possibly torn by a concurrent write
+        }
+        if (stamps != null) {
+            for (int i = 0; i < count; i++) {
+                SharedVector v = matrix.get(i);
+                if (v != this && v.isGuarded() && !v.lock.validate(stamps[i])) {
+                    return false;
                 }
-                cols = matrix.get(0).length();
-                result = new double[cols];
-                for (int j = 0; j < cols; j++) {
-                    SharedVector colVector = new SharedVector(new double[rows], VectorOrientation.COLUMN_MAJOR);
-                    for (int i = 0; i < rows; i++) {
-                        matrix.get(i).readLock();
-                        colVector.vector[i] = matrix.get(i).get(j);
-                        matrix.get(i).readUnlock();
+            }
+        }
+        return true;
+    }
+
+    // result[0..cols) += x * row[0..cols)
+    private static void axpyInto(double x, SharedVector row, double[] result, int cols) {
+        double[] b = row.vector;
+        if (b != null && row.stride == 1) {
+            VectorKernels.axpy(x, b, row.offset, result, 0, cols);
+        } else if (b != null) {
+            for (int j = 0, q = row.offset; j < cols; j++, q += row.stride) {
+                result[j] += x * b[q];
+            }
+        } else {
+            for (int j = 0, q = row.offset; j < cols; j++, q += row.stride) {
+                result[j] += x * row.load(q);
+            }
+        }
+    }
+
+    // replaces the contents with len elements of src starting at srcOffset and marks the vector as a row.
+    void assignRow(double[] src, int srcOffset, int len) {
+        this.writeLock();
+        try {
+            if (len == this.length) {
+                if (vector != null && stride == 1) {
+                    System.arraycopy(src, srcOffset, vector, offset, len);
+                } else if (buffer != null && stride == 1) {
+                    buffer.put(offset, src, srcOffset, len);
+                } else {
+                    for (int i = 0, p = offset; i < len; i++, p += stride) {
+                        this.put(p, src[srcOffset + i]);
                     }
-                    result[j] = this.dot(colVector);
                 }
             } else {
-                rows = matrix.get(0).length();
-                if (this.vector.length != rows) {
-                    throw new IllegalArgumentException("Vector length must match matrix row count for multiplication.");
+                double[] values = new double[len];
+                System.arraycopy(src, srcOffset, values, 0, len);
+                store(values, len);
+            }
+            this.orientation = VectorOrientation.ROW_MAJOR;
+        } finally {
+            this.writeUnlock();
+        }
+    }
+
+    // float32 version of assignRow
+    void assignRow(float[] src, int srcOffset, int len) {
+        this.writeLock();
+        try {
+            if (len == this.length && floats != null && stride == 1) {
+                System.arraycopy(src, srcOffset, floats, offset, len);
+            } else if (len == this.length) {
+                for (int i = 0, p = offset; i < len; i++, p += stride) {
+                    this.put(p, src[srcOffset + i]);
                 }
-                cols = matrix.length();
-                result = new double[cols];
-                for (int i = 0; i < cols; i++) {
-                    matrix.get(i).readLock();
-                    result[i] = this.dot(matrix.get(i));
-                    matrix.get(i).readUnlock();
+            } else if (floats != null) {
+                float[] values = new float[len];
+                System.arraycopy(src, srcOffset, values, 0, len);
+                detach(null, values, len);
+            } else {
+                double[] values = new double[len];
+                for (int i = 0; i < len; i++) {
+                    values[i] = src[srcOffset + i];
                 }
+                detach(values, null, len);
             }
-            this.vector = result;
             this.orientation = VectorOrientation.ROW_MAJOR;
         } finally {
             this.writeUnlock();
         }
     }
+
+    // replaces the contents with values[0..count). Writes through the view when the length is
+    // unchanged, otherwise detaches the vector into a private heap array of the same precision.
+    // Caller must hold the write lock.
+    private void store(double[] values, int count) {
+        if (count == this.length) {
+            for (int i = 0, p = offset; i < length; i++, p += stride) {
+                this.put(p, values[i]);
+            }
+        } else if (floats != null) {
+            float[] rounded = new float[count];
+            for (int i = 0; i < count; i++) {
+                rounded[i] = (float) values[i];
+            }
+            detach(null, rounded, count);
+        } else {
+            detach((values.length == count) ? values : Arrays.copyOf(values, count), null, count);
+        }
+    }
+
+    private void detach(double[] doubleValues, float[] floatValues, int newLength) {
+        this.vector = doubleValues;
+        this.floats = floatValues;
+        this.buffer = null;
+        this.offset = 0;
+        this.stride = 1;
+        this.length = newLength;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,181 @@
+package memory;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API implementations behind VectorKernels. Only loaded once VectorKernels has checked
+ * that jdk.incubator.vector is available, every loop finishes its tail with scalar code.
+ */
+final class SimdKernels {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+
+    private SimdKernels() {
+    }
+
+    static int lanes() {
+        return SPECIES.length();
+    }
+
+    static void add(double[] dst, int dOff, double[] src, int sOff, int len) {
+        int i = 0;
+        int bound = SPECIES.loopBound(len);
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector a = DoubleVector.fromArray(SPECIES, dst, dOff + i);
+            DoubleVector b = DoubleVector.fromArray(SPECIES, src, sOff + i);
+            a.add(b).intoArray(dst, dOff + i);
+        }
+        for (; i < len; i++) {
+            dst[dOff + i] += src[sOff + i];
+        }
+    }
+
+    static void negate(double[] a, int off, int len) {
+        int i = 0;
+        int bound = SPECIES.loopBound(len);
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, a, off + i).neg().intoArray(a, off + i);
+        }
+        for (; i < len; i++) {
+            a[off + i] = -a[off + i];
+        }
+    }
+
+    static double dot(double[] a, int aOff, double[] b, int bOff, int len) {
+        int i = 0;
+        int bound = SPECIES.loopBound(len);
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector x = DoubleVector.fromArray(SPECIES, a, aOff + i);
+            DoubleVector y = DoubleVector.fromArray(SPECIES, b, bOff + i);
+            acc = x.mul(y).add(acc);
+        }
+        double result = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < len; i++) {
+            result += a[aOff + i] * b[bOff + i];
+        }
+        return result;
+    }
+
+    static void axpy(double alpha, double[] x, int xOff, double[] y, int yOff, int len) {
+        int i = 0;
+        int bound = SPECIES.loopBound(len);
+        DoubleVector va = DoubleVector.broadcast(SPECIES, alpha);
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector vx = DoubleVector.fromArray(SPECIES, x, xOff + i);
+            DoubleVector vy = DoubleVector.fromArray(SPECIES, y, yOff + i);
+            vx.mul(va).add(vy).intoArray(y, yOff + i);
+        }
+        for (; i < len; i++) {
+            y[yOff + i] += alpha * x[xOff + i];
+        }
+    }
+
+    static void axpy4(double alpha0, double alpha1, double alpha2, double alpha3, double[] x, int xOff,
+            double[] y, int yOff0, int yOff1, int yOff2, int yOff3, int len) {
+        int i = 0;
+        int bound = SPECIES.loopBound(len);
+        DoubleVector va0 = DoubleVector.broadcast(SPECIES, alpha0);
+        DoubleVector va1 = DoubleVector.broadcast(SPECIES, alpha1);
+        DoubleVector va2 = DoubleVector.broadcast(SPECIES, alpha2);
+        DoubleVector va3 = DoubleVector.broadcast(SPECIES, alpha3);
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector vx = DoubleVector.fromArray(SPECIES, x, xOff + i);
+            vx.mul(va0).add(DoubleVector.fromArray(SPECIES, y, yOff0 + i)).intoArray(y, yOff0 + i);
+            vx.mul(va1).add(DoubleVector.fromArray(SPECIES, y, yOff1 + i)).intoArray(y, yOff1 + i);
+            vx.mul(va2).add(DoubleVector.fromArray(SPECIES, y, yOff2 + i)).intoArray(y, yOff2 + i);
+            vx.mul(va3).add(DoubleVector.fromArray(SPECIES, y, yOff3 + i)).intoArray(y, yOff3 + i);
+        }
+        for (; i < len; i++) {
+            double v = x[xOff + i];
+            y[yOff0 + i] += alpha0 * v;
+            y[yOff1 + i] += alpha1 * v;
+            y[yOff2 + i] += alpha2 * v;
+            y[yOff3 + i] += alpha3 * v;
+        }
+    }
+
+    // --- float32 versions, twice as many lanes per vector ---
+
+    static void add(float[] dst, int dOff, float[] src, int sOff, int len) {
+        int i = 0;
+        int bound = FLOATS.loopBound(len);
+        for (; i < bound; i += FLOATS.length()) {
+            FloatVector a = FloatVector.fromArray(FLOATS, dst, dOff + i);
+            FloatVector b = FloatVector.fromArray(FLOATS, src, sOff + i);
+            a.add(b).intoArray(dst, dOff + i);
+        }
+        for (; i < len; i++) {
+            dst[dOff + i] += src[sOff + i];
+        }
+    }
+
+    static void negate(float[] a, int off, int len) {
+        int i = 0;
+        int bound = FLOATS.loopBound(len);
+        for (; i < bound; i += FLOATS.length()) {
+            FloatVector.fromArray(FLOATS, a, off + i).neg().intoArray(a, off + i);
+        }
+        for (; i < len; i++) {
+            a[off + i] = -a[off + i];
+        }
+    }
+
+    static float dot(float[] a, int aOff, float[] b, int bOff, int len) {
+        int i = 0;
+        int bound = FLOATS.loopBound(len);
+        FloatVector acc = FloatVector.zero(FLOATS);
+        for (; i < bound; i += FLOATS.length()) {
+            FloatVector x = FloatVector.fromArray(FLOATS, a, aOff + i);
+            FloatVector y = FloatVector.fromArray(FLOATS, b, bOff + i);
+            acc = x.mul(y).add(acc);
+        }
+        float result = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < len; i++) {
+            result += a[aOff + i] * b[bOff + i];
+        }
+        return result;
+    }
+
+    static void axpy(float alpha, float[] x, int xOff, float[] y, int yOff, int len) {
+        int i = 0;
+        int bound = FLOATS.loopBound(len);
+        FloatVector va = FloatVector.broadcast(FLOATS, alpha);
+        for (; i < bound; i += FLOATS.length()) {
+            FloatVector vx = FloatVector.fromArray(FLOATS, x, xOff + i);
+            FloatVector vy = FloatVector.fromArray(FLOATS, y, yOff + i);
+            vx.mul(va).add(vy).intoArray(y, yOff + i);
+        }
+        for (; i < len; i++) {
+            y[yOff + i] += alpha * x[xOff + i];
+        }
+    }
+
+    static void axpy4(float alpha0, float alpha1, float alpha2, float alpha3, float[] x, int xOff,
+            float[] y, int yOff0, int yOff1, int yOff2, int yOff3, int len) {
+        int i = 0;
+        int bound = FLOATS.loopBound(len);
+        FloatVector va0 = FloatVector.broadcast(FLOATS, alpha0);
+        FloatVector va1 = FloatVector.broadcast(FLOATS, alpha1);
+        FloatVector va2 = FloatVector.broadcast(FLOATS, alpha2);
+        FloatVector va3 = FloatVector.broadcast(FLOATS, alpha3);
+        for (; i < bound; i += FLOATS.length()) {
+            FloatVector vx = FloatVector.fromArray(FLOATS, x, xOff + i);
+            vx.mul(va0).add(FloatVector.fromArray(FLOATS, y, yOff0 + i)).intoArray(y, yOff0 + i);
+            vx.mul(va1).add(FloatVector.fromArray(FLOATS, y, yOff1 + i)).intoArray(y, yOff1 + i);
+            vx.mul(va2).add(FloatVector.fromArray(FLOATS, y, yOff2 + i)).intoArray(y, yOff2 + i);
+            vx.mul(va3).add(FloatVector.fromArray(FLOATS, y, yOff3 + i)).intoArray(y, yOff3 + i);
+        }
+        for (; i < len; i++) {
+            float v = x[xOff + i];
+            y[yOff0 + i] += alpha0 * v;
+            y[yOff1 + i] += alpha1 * v;
+            y[yOff2 + i] += alpha2 * v;
+            y[yOff3 + i] += alpha3 * v;
+        }
+    }
+}
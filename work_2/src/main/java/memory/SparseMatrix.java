@@ -0,0 +1,312 @@
+package memory;
+
+import java.util.Arrays;
+
+/**
+ * Immutable matrix in compressed sparse row (CSR) form: the non-zeros of row i are
+ * values[rowPtr[i] .. rowPtr[i+1]) in the columns colIdx[rowPtr[i] .. rowPtr[i+1]), sorted by column.
+ * The transpose of a CSR matrix is its CSC form, so transpose() doubles as the CSR to CSC conversion.
+ * Row-range methods let the engine split a kernel into independent tasks.
+ */
+public class SparseMatrix {
+
+    // Past this density the dense kernels win: CSR stores 12 bytes per non-zero instead of 8
+    // per entry, and its kernels pay for an indirect load on every access.
+    public static final double FILL_IN_LIMIT = 0.25;
+
+    private final int rows;
+    private final int cols;
+    private final int[] rowPtr;
+    private final int[] colIdx;
+    private final double[] values;
+
+    public SparseMatrix(int rows, int cols, int[] rowPtr, int[] colIdx, double[] values) {
+        if (rowPtr.length != rows + 1 || colIdx.length < rowPtr[rows] || values.length < rowPtr[rows]) {
+            throw new IllegalArgumentException("Inconsistent CSR arrays.");
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.rowPtr = rowPtr;
+        this.colIdx = colIdx;
+        this.values = values;
+    }
+
+    public static SparseMatrix fromDense(double[][] matrix) {
+        Builder builder = new Builder((matrix.length == 0) ? 0 : matrix[0].length);
+        for (double[] row : matrix) {
+            builder.appendRow(row);
+        }
+        return builder.build();
+    }
+
+    public int rowCount() {
+        return rows;
+    }
+
+    public int columnCount() {
+        return cols;
+    }
+
+    public int nonZeros() {
+        return rowPtr[rows];
+    }
+
+    public double density() {
+        long size = (long) rows * cols;
+        return (size == 0) ? 1.0 : (double) nonZeros() / size;
+    }
+
+    public double get(int row, int col) {
+        int from = rowPtr[row];
+        int to = rowPtr[row + 1];
+        int pos = Arrays.binarySearch(colIdx, from, to, col);
+        return (pos >= 0) ? values[pos] : 0.0;
+    }
+
+    public double[][] toDense() {
+        double[][] dense = new double[rows][cols];
+        for (int i = 0; i < rows; i++) {
+            for (int p = rowPtr[i]; p < rowPtr[i + 1]; p++) {
+                dense[i][colIdx[p]] = values[p];
+            }
+        }
+        return dense;
+    }
+
+    public SparseMatrix negate() {
+        int nnz = nonZeros();
+        double[] negated = new double[nnz];
+        for (int p = 0; p < nnz; p++) {
+            negated[p] = -values[p];
+        }
+        return new SparseMatrix(rows, cols, rowPtr, colIdx, negated);
+    }
+
+    // counting sort by column; the result rows come out already sorted
+    public SparseMatrix transpose() {
+        int nnz = nonZeros();
+        int[] tPtr = new int[cols + 1];
+        for (int p = 0; p < nnz; p++) {
+            tPtr[colIdx[p] + 1]++;
+        }
+        for (int c = 0; c < cols; c++) {
+            tPtr[c + 1] += tPtr[c];
+        }
+        int[] next = Arrays.copyOf(tPtr, cols);
+        int[] tIdx = new int[nnz];
+        double[] tValues = new double[nnz];
+        for (int i = 0; i < rows; i++) {
+            for (int p = rowPtr[i]; p < rowPtr[i + 1]; p++) {
+                int dst = next[colIdx[p]]++;
+                tIdx[dst] = i;
+                tValues[dst] = values[p];
+            }
+        }
+        return new SparseMatrix(cols, rows, tPtr, tIdx, tValues);
+    }
+
+    // merges two sorted rows at a time
+    public SparseMatrix add(SparseMatrix other) {
+        requireSameShape(other);
+        Builder builder = new Builder(cols);
+        for (int i = 0; i < rows; i++) {
+            int p = rowPtr[i];
+            int q = other.rowPtr[i];
+            int pEnd = rowPtr[i + 1];
+            int qEnd = other.rowPtr[i + 1];
+            while (p < pEnd || q < qEnd) {
+                int cp = (p < pEnd) ? colIdx[p] : Integer.MAX_VALUE;
+                int cq = (q < qEnd) ? other.colIdx[q] : Integer.MAX_VALUE;
+                if (cp == cq) {
+                    double sum = values[p++] + other.values[q++];
+                    if (sum != 0.0) {
+                        // entries that cancel out are dropped, so that the result keeps only non-zeros
+                        builder.append(cp, sum);
+                    }
+                } else if (cp < cq) {
+                    builder.append(cp, values[p++]);
+                } else {
+                    builder.append(cq, other.values[q++]);
+                }
+            }
+            builder.endRow();
+        }
+        return builder.build();
+    }
+
+    // dense[i] += this[i] for rows [rowFrom, rowTo)
+    public void addRowsTo(double[][] dense, int rowFrom, int rowTo) {
+        for (int i = rowFrom; i < rowTo; i++) {
+            double[] row = dense[i];
+            for (int p = rowPtr[i]; p < rowPtr[i + 1]; p++) {
+                row[colIdx[p]] += values[p];
+            }
+        }
+    }
+
+    /**
+     * Rows [rowFrom, rowTo) of this * other, as a CSR block (Gustavson's algorithm with a dense
+     * accumulator per row).
+     */
+    public SparseMatrix multiplyRows(SparseMatrix other, int rowFrom, int rowTo) {
+        requireMultipliable(other.rows);
+        double[] accumulator = new double[other.cols];
+        boolean[] touched = new boolean[other.cols];
+        int[] pattern = new int[other.cols];
+        Builder builder = new Builder(other.cols);
+        for (int i = rowFrom; i < rowTo; i++) {
+            int count = 0;
+            for (int p = rowPtr[i]; p < rowPtr[i + 1]; p++) {
+                double a = values[p];
+                int k = colIdx[p];
+                for (int q = other.rowPtr[k]; q < other.rowPtr[k + 1]; q++) {
+                    int j = other.colIdx[q];
+                    if (!touched[j]) {
+                        touched[j] = true;
+                        pattern[count++] = j;
+                    }
+                    accumulator[j] += a * other.values[q];
+                }
+            }
+            Arrays.sort(pattern, 0, count);
+            for (int t = 0; t < count; t++) {
+                int j = pattern[t];
+                if (accumulator[j] != 0.0) {
+                    builder.append(j, accumulator[j]);
+                }
+                accumulator[j] = 0.0;
+                touched[j] = false;
+            }
+            builder.endRow();
+        }
+        return builder.build();
+    }
+
+    // out[i] = this[i] * dense for rows [rowFrom, rowTo); out rows must be zeroed
+    public void multiplyDenseRows(double[][] dense, int rowFrom, int rowTo, double[][] out) {
+        requireMultipliable(dense.length);
+        for (int i = rowFrom; i < rowTo; i++) {
+            double[] target = out[i];
+            for (int p = rowPtr[i]; p < rowPtr[i + 1]; p++) {
+                double[] source = dense[colIdx[p]];
+                VectorKernels.axpy(values[p], source, 0, target, 0, target.length);
+            }
+        }
+    }
+
+    // out[i] = dense[i] * this for rows [rowFrom, rowTo); out rows must be zeroed
+    public void multiplyByDenseRows(double[][] dense, int rowFrom, int rowTo, double[][] out) {
+        for (int i = rowFrom; i < rowTo; i++) {
+            double[] left = dense[i];
+            if (left.length != rows) {
+                throw new IllegalArgumentException("Incompatible matrix dimensions for multiplication.");
+            }
+            double[] target = out[i];
+            for (int k = 0; k < rows; k++) {
+                // zeros of the dense operand are not skipped: 0 * NaN and 0 * infinity are NaN
+                double a = left[k];
+                for (int p = rowPtr[k]; p < rowPtr[k + 1]; p++) {
+                    target[colIdx[p]] += a * values[p];
+                }
+            }
+        }
+    }
+
+    // concatenates row blocks that share the same column count
+    public static SparseMatrix stack(SparseMatrix[] blocks, int cols) {
+        int totalRows = 0;
+        int totalNnz = 0;
+        for (SparseMatrix block : blocks) {
+            totalRows += block.rows;
+            totalNnz += block.nonZeros();
+        }
+        int[] ptr = new int[totalRows + 1];
+        int[] idx = new int[totalNnz];
+        double[] vals = new double[totalNnz];
+        int row = 0;
+        int pos = 0;
+        for (SparseMatrix block : blocks) {
+            int nnz = block.nonZeros();
+            System.arraycopy(block.colIdx, 0, idx, pos, nnz);
+            System.arraycopy(block.values, 0, vals, pos, nnz);
+            for (int i = 0; i < block.rows; i++) {
+                ptr[row + i + 1] = pos + block.rowPtr[i + 1];
+            }
+            row += block.rows;
+            pos += nnz;
+        }
+        return new SparseMatrix(totalRows, cols, ptr, idx, vals);
+    }
+
+    private void requireSameShape(SparseMatrix other) {
+        if (rows != other.rows || cols != other.cols) {
+            throw new IllegalArgumentException("Incompatible matrix dimensions for addition.");
+        }
+    }
+
+    private void requireMultipliable(int otherRows) {
+        if (cols != otherRows) {
+            throw new IllegalArgumentException("Incompatible matrix dimensions for multiplication.");
+        }
+    }
+
+    /**
+     * Accumulates a CSR matrix row by row, so that callers never hold the dense form.
+     */
+    public static class Builder {
+        private final int cols;
+        private int[] rowPtr = new int[16];
+        private int[] colIdx = new int[16];
+        private double[] values = new double[16];
+        private int rows = 0;
+        private int nnz = 0;
+
+        public Builder(int cols) {
+            this.cols = cols;
+        }
+
+        public void appendRow(double[] row) {
+            if (row.length != cols) {
+                throw new IllegalArgumentException("All matrix rows must have the same length.");
+            }
+            for (int j = 0; j < cols; j++) {
+                if (row[j] != 0.0) {
+                    append(j, row[j]);
+                }
+            }
+            endRow();
+        }
+
+        // adds a non-zero to the current row; columns must be increasing
+        void append(int col, double value) {
+            if (nnz == colIdx.length) {
+                colIdx = Arrays.copyOf(colIdx, nnz * 2);
+                values = Arrays.copyOf(values, nnz * 2);
+            }
+            colIdx[nnz] = col;
+            values[nnz] = value;
+            nnz++;
+        }
+
+        void endRow() {
+            rows++;
+            if (rows == rowPtr.length) {
+                rowPtr = Arrays.copyOf(rowPtr, rows * 2);
+            }
+            rowPtr[rows] = nnz;
+        }
+
+        public int rowCount() {
+            return rows;
+        }
+
+        public int nonZeros() {
+            return nnz;
+        }
+
+        public SparseMatrix build() {
+            return new SparseMatrix(rows, cols, Arrays.copyOf(rowPtr, rows + 1), Arrays.copyOf(colIdx, nnz),
+                    Arrays.copyOf(values, nnz));
+        }
+    }
+}
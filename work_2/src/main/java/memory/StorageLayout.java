@@ -0,0 +1,19 @@
+package memory;
+/**
+ * Determines how a SharedMatrix lays out its numeric data in memory.
+ * With PER_VECTOR, every SharedVector owns a private array.
+ * With CONTIGUOUS, the whole matrix lives in one row-major array and each SharedVector is a
+ * row or column view into it, so whole-matrix kernels stream through memory linearly.
+ * With OFF_HEAP, the vectors live in native memory owned by an OffHeapArena, outside the reach of the GC.
+ * With MAPPED, the vectors live in memory-mapped temp files owned by a MappedArena, so matrices
+ * can exceed the heap and physical memory.
+ * With TILED, the matrix is a TiledMatrix of square blocks, each with its own lock, and tasks
+ * work block by block instead of row by row.
+ */
+public enum StorageLayout {
+    PER_VECTOR,
+    CONTIGUOUS,
+    OFF_HEAP,
+    MAPPED,
+    TILED
+}
@@ -0,0 +1,117 @@
+package memory;
+
+/**
+ * Strassen multiplication of square matrices stored as flat row-major arrays.
+ * One recursion level splits A and B into quadrants and replaces the eight quadrant products
+ * with seven, M1..M7, which are independent of each other. Matrices of odd size are padded
+ * with a zero row and column. Below the cutoff the classical GemmKernel takes over.
+ */
+public final class StrassenKernel {
+
+    public static final int DEFAULT_CUTOFF = 256; // size at which recursion falls back to GemmKernel
+
+    private StrassenKernel() {
+    }
+
+    // size of the quadrants of an n x n matrix
+    public static int half(int n) {
+        return (n + 1) / 2;
+    }
+
+    /**
+     * Returns a * b for n x n operands, recursing sequentially down to the cutoff.
+     */
+    public static double[] multiply(double[] a, double[] b, int n, int cutoff) {
+        if (n <= Math.max(1, cutoff)) {
+            double[] c = new double[n * n];
+            GemmKernel.multiply(a, b, c, n, n, n);
+            return c;
+        }
+        double[][] operands = operands(a, b, n);
+        int h = half(n);
+        double[][] products = new double[7][];
+        for (int k = 0; k < 7; k++) {
+            products[k] = multiply(operands[2 * k], operands[2 * k + 1], h, cutoff);
+        }
+        double[] c = new double[n * n];
+        combineRows(products, n, 0, n, c);
+        return c;
+    }
+
+    /**
+     * Builds the fourteen h x h operands of one recursion level: entries 2k and 2k+1 are the
+     * left and right factors of the product M(k+1).
+     */
+    public static double[][] operands(double[] a, double[] b, int n) {
+        int h = half(n);
+        double[] a11 = quadrant(a, n, 0, 0);
+        double[] a12 = quadrant(a, n, 0, h);
+        double[] a21 = quadrant(a, n, h, 0);
+        double[] a22 = quadrant(a, n, h, h);
+        double[] b11 = quadrant(b, n, 0, 0);
+        double[] b12 = quadrant(b, n, 0, h);
+        double[] b21 = quadrant(b, n, h, 0);
+        double[] b22 = quadrant(b, n, h, h);
+        return new double[][] {
+            sum(a11, a22), sum(b11, b22),        // M1 = (A11 + A22)(B11 + B22)
+            sum(a21, a22), b11,                  // M2 = (A21 + A22) B11
+            a11, difference(b12, b22),           // M3 = A11 (B12 - B22)
+            a22, difference(b21, b11),           // M4 = A22 (B21 - B11)
+            sum(a11, a12), b22,                  // M5 = (A11 + A12) B22
+            difference(a21, a11), sum(b11, b12), // M6 = (A21 - A11)(B11 + B12)
+            difference(a12, a22), sum(b21, b22), // M7 = (A12 - A22)(B21 + B22)
+        };
+    }
+
+    /**
+     * Writes rows [rowFrom, rowTo) of the n x n product, assembled from M1..M7, into out
+     * (row-major, n elements per row).
+     */
+    public static void combineRows(double[][] m, int n, int rowFrom, int rowTo, double[] out) {
+        int h = half(n);
+        for (int row = rowFrom; row < rowTo; row++) {
+            int base = (row - rowFrom) * n;
+            if (row < h) {
+                int q = row * h;
+                for (int col = 0; col < h; col++) { // C11 = M1 + M4 - M5 + M7
+                    out[base + col] = m[0][q + col] + m[3][q + col] - m[4][q + col] + m[6][q + col];
+                }
+                for (int col = h; col < n; col++) { // C12 = M3 + M5
+                    out[base + col] = m[2][q + col - h] + m[4][q + col - h];
+                }
+            } else {
+                int q = (row - h) * h;
+                for (int col = 0; col < h; col++) { // C21 = M2 + M4
+                    out[base + col] = m[1][q + col] + m[3][q + col];
+                }
+                for (int col = h; col < n; col++) { // C22 = M1 - M2 + M3 + M6
+                    out[base + col] = m[0][q + col - h] - m[1][q + col - h] + m[2][q + col - h] + m[5][q + col - h];
+                }
+            }
+        }
+    }
+
+    // copies the h x h block starting at (row, col), padding with zeros past the edge
+    private static double[] quadrant(double[] m, int n, int row, int col) {
+        int h = half(n);
+        double[] q = new double[h * h];
+        int rows = Math.min(h, n - row);
+        int cols = Math.min(h, n - col);
+        for (int i = 0; i < rows; i++) {
+            System.arraycopy(m, (row + i) * n + col, q, i * h, cols);
+        }
+        return q;
+    }
+
+    private static double[] sum(double[] x, double[] y) {
+        double[] r = x.clone();
+        VectorKernels.add(r, 0, y, 0, r.length);
+        return r;
+    }
+
+    private static double[] difference(double[] x, double[] y) {
+        double[] r = x.clone();
+        VectorKernels.axpy(-1.0, y, 0, r, 0, r.length);
+        return r;
+    }
+}
@@ -0,0 +1,233 @@
+package memory;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Dense matrix split into square tiles of tileSize x tileSize elements (smaller along the bottom
+ * and right edges), each stored row-major in its own array and guarded by its own lock.
+ * The kernels work one tile of the result at a time, so the engine can split any shape, tall,
+ * wide or square, into tasks of similar size whose operand tiles stay in cache.
+ */
+public class TiledMatrix {
+
+    public static final int DEFAULT_TILE_SIZE = 64; // 32 KB per tile, a few tiles fit in L2
+
+    private final int rows;
+    private final int cols;
+    private final int tileSize;
+    private final int tileRows; // number of tiles down
+    private final int tileCols; // number of tiles across
+    private final double[][] tiles; // tile (ti, tj) at ti * tileCols + tj
+    private final StampedLock[] locks; // one per tile, not reentrant like the SharedVector locks
+
+    /**
+     * Creates a rows x cols matrix of zeros.
+     */
+    public TiledMatrix(int rows, int cols, int tileSize) {
+        if (rows < 0 || cols < 0) {
+            throw new IllegalArgumentException("Matrix dimensions cannot be negative.");
+        }
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("Tile size must be positive.");
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.tileSize = tileSize;
+        this.tileRows = (rows + tileSize - 1) / tileSize;
+        this.tileCols = (cols + tileSize - 1) / tileSize;
+        this.tiles = new double[tileRows * tileCols][];
+        this.locks = new StampedLock[tiles.length];
+        for (int ti = 0; ti < tileRows; ti++) {
+            for (int tj = 0; tj < tileCols; tj++) {
+                tiles[index(ti, tj)] = new double[tileHeight(ti) * tileWidth(tj)];
+                locks[index(ti, tj)] = new StampedLock();
+            }
+        }
+    }
+
+    public static TiledMatrix fromRowMajor(double[][] matrix, int tileSize) {
+        int numRows = matrix.length;
+        int numCols = (numRows == 0) ? 0 : matrix[0].length;
+        TiledMatrix tiled = new TiledMatrix(numRows, numCols, tileSize);
+        for (int row = 0; row < numRows; row++) {
+            if (matrix[row].length != numCols) {
+                throw new IllegalArgumentException("All matrix rows must have the same length.");
+            }
+            int ti = row / tileSize;
+            for (int tj = 0; tj < tiled.tileCols; tj++) {
+                int width = tiled.tileWidth(tj);
+                System.arraycopy(matrix[row], tj * tileSize, tiled.tiles[tiled.index(ti, tj)],
+                        (row - ti * tileSize) * width, width);
+            }
+        }
+        return tiled;
+    }
+
+    public double[][] toRowMajor() {
+        double[][] result = new double[rows][cols];
+        for (int ti = 0; ti < tileRows; ti++) {
+            for (int tj = 0; tj < tileCols; tj++) {
+                int width = tileWidth(tj);
+                Lock lock = readLock(ti, tj);
+                lock.lock();
+                try {
+                    double[] tile = tiles[index(ti, tj)];
+                    for (int r = 0; r < tileHeight(ti); r++) {
+                        System.arraycopy(tile, r * width, result[ti * tileSize + r], tj * tileSize, width);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+        return result;
+    }
+
+    public int rowCount() {
+        return rows;
+    }
+
+    public int columnCount() {
+        return cols;
+    }
+
+    public int tileSize() {
+        return tileSize;
+    }
+
+    public int tileRows() {
+        return tileRows;
+    }
+
+    public int tileCols() {
+        return tileCols;
+    }
+
+    public double get(int row, int col) {
+        if (row < 0 || row >= rows || col < 0 || col >= cols) {
+            throw new IndexOutOfBoundsException("Element (" + row + ", " + col + ") is out of bounds.");
+        }
+        int ti = row / tileSize;
+        int tj = col / tileSize;
+        Lock lock = readLock(ti, tj);
+        lock.lock();
+        try {
+            return tiles[index(ti, tj)][(row - ti * tileSize) * tileWidth(tj) + (col - tj * tileSize)];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // tile (ti, tj) += the same tile of other
+    public void addTile(TiledMatrix other, int ti, int tj) {
+        if (rows != other.rows || cols != other.cols || tileSize != other.tileSize) {
+            throw new IllegalArgumentException("Incompatible matrix dimensions for addition.");
+        }
+        Lock write = writeLock(ti, tj);
+        Lock read = (other != this) ? other.readLock(ti, tj) : null;
+        write.lock();
+        if (read != null) {
+            read.lock();
+        }
+        try {
+            double[] tile = tiles[index(ti, tj)];
+            VectorKernels.add(tile, 0, other.tiles[index(ti, tj)], 0, tile.length);
+        } finally {
+            if (read != null) {
+                read.unlock();
+            }
+            write.unlock();
+        }
+    }
+
+    public void negateTile(int ti, int tj) {
+        Lock write = writeLock(ti, tj);
+        write.lock();
+        try {
+            double[] tile = tiles[index(ti, tj)];
+            VectorKernels.negate(tile, 0, tile.length);
+        } finally {
+            write.unlock();
+        }
+    }
+
+    // writes tile (ti, tj) of this matrix, transposed, into tile (tj, ti) of target
+    public void transposeTileInto(TiledMatrix target, int ti, int tj) {
+        if (target.rows != cols || target.cols != rows || target.tileSize != tileSize || target == this) {
+            throw new IllegalArgumentException("Target must be a separate matrix of the transposed shape.");
+        }
+        Lock read = readLock(ti, tj);
+        Lock write = target.writeLock(tj, ti);
+        write.lock();
+        read.lock();
+        try {
+            TransposeKernel.transpose(tiles[index(ti, tj)], tileHeight(ti), tileWidth(tj), target.tiles[target.index(tj, ti)]);
+        } finally {
+            read.unlock();
+            write.unlock();
+        }
+    }
+
+    /**
+     * Tile (ti, tj) of this matrix += row ti of the tiles of a times column tj of the tiles of b.
+     * Every product of two tiles goes through the blocked GemmKernel, straight on the tile arrays.
+     */
+    public void multiplyTile(TiledMatrix a, TiledMatrix b, int ti, int tj) {
+        if (a.cols != b.rows || rows != a.rows || cols != b.cols
+                || a.tileSize != tileSize || b.tileSize != tileSize) {
+            throw new IllegalArgumentException("Incompatible matrix dimensions for multiplication.");
+        }
+        if (a == this || b == this) {
+            throw new IllegalArgumentException("The product cannot be written into one of its operands.");
+        }
+        int height = tileHeight(ti);
+        int width = tileWidth(tj);
+        Lock write = writeLock(ti, tj);
+        write.lock();
+        try {
+            double[] c = tiles[index(ti, tj)];
+            for (int tk = 0; tk < a.tileCols; tk++) {
+                int depth = a.tileWidth(tk);
+                Lock readA = a.readLock(ti, tk);
+                // a tile multiplied by itself is locked once
+                Lock readB = (a == b && ti == tk && tk == tj) ? null : b.readLock(tk, tj);
+                readA.lock();
+                if (readB != null) {
+                    readB.lock();
+                }
+                try {
+                    GemmKernel.multiply(a.tiles[a.index(ti, tk)], 0, depth, b.tiles[b.index(tk, tj)], 0, width,
+                            c, 0, width, height, depth, width);
+                } finally {
+                    if (readB != null) {
+                        readB.unlock();
+                    }
+                    readA.unlock();
+                }
+            }
+        } finally {
+            write.unlock();
+        }
+    }
+
+    private int index(int ti, int tj) {
+        return ti * tileCols + tj;
+    }
+
+    private int tileHeight(int ti) {
+        return Math.min(tileSize, rows - ti * tileSize);
+    }
+
+    private int tileWidth(int tj) {
+        return Math.min(tileSize, cols - tj * tileSize);
+    }
+
+    private Lock readLock(int ti, int tj) {
+        return locks[index(ti, tj)].asReadLock();
+    }
+
+    private Lock writeLock(int ti, int tj) {
+        return locks[index(ti, tj)].asWriteLock();
+    }
+}
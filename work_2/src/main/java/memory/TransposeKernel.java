@@ -0,0 +1,76 @@
+package memory;
+
+/**
+ * Cache-oblivious out-of-place transpose of flat row-major double or float arrays.
+ * The larger dimension is halved recursively until a block fits in L1, so both the reads and
+ * the strided writes of a leaf stay in cache whatever the cache sizes are.
+ * Only used where a contiguous copy is really needed: transposes themselves are views.
+ */
+public final class TransposeKernel {
+
+    private static final int LEAF = 32; // largest block side copied element by element
+
+    private TransposeKernel() {
+    }
+
+    /**
+     * dst = src^T, where src is rows x cols and dst is cols x rows, both row-major without padding.
+     */
+    public static void transpose(double[] src, int rows, int cols, double[] dst) {
+        if (src.length < rows * cols || dst.length < rows * cols) {
+            throw new IllegalArgumentException("Buffers are too small for a " + rows + "x" + cols + " transpose.");
+        }
+        transpose(src, dst, rows, cols, 0, rows, 0, cols);
+    }
+
+    // transposes the block [r0, r1) x [c0, c1) of src
+    private static void transpose(double[] src, double[] dst, int rows, int cols, int r0, int r1, int c0, int c1) {
+        int height = r1 - r0;
+        int width = c1 - c0;
+        if (height <= LEAF && width <= LEAF) {
+            for (int r = r0; r < r1; r++) {
+                for (int c = c0; c < c1; c++) {
+                    dst[c * rows + r] = src[r * cols + c];
+                }
+            }
+        } else if (height >= width) {
+            int mid = r0 + height / 2;
+            transpose(src, dst, rows, cols, r0, mid, c0, c1);
+            transpose(src, dst, rows, cols, mid, r1, c0, c1);
+        } else {
+            int mid = c0 + width / 2;
+            transpose(src, dst, rows, cols, r0, r1, c0, mid);
+            transpose(src, dst, rows, cols, r0, r1, mid, c1);
+        }
+    }
+
+    /**
+     * Single-precision version of {@link #transpose(double[], int, int, double[])}.
+     */
+    public static void transpose(float[] src, int rows, int cols, float[] dst) {
+        if (src.length < rows * cols || dst.length < rows * cols) {
+            throw new IllegalArgumentException("Buffers are too small for a " + rows + "x" + cols + " transpose.");
+        }
+        transpose(src, dst, rows, cols, 0, rows, 0, cols);
+    }
+
+    private static void transpose(float[] src, float[] dst, int rows, int cols, int r0, int r1, int c0, int c1) {
+        int height = r1 - r0;
+        int width = c1 - c0;
+        if (height <= LEAF && width <= LEAF) {
+            for (int r = r0; r < r1; r++) {
+                for (int c = c0; c < c1; c++) {
+                    dst[c * rows + r] = src[r * cols + c];
+                }
+            }
+        } else if (height >= width) {
+            int mid = r0 + height / 2;
+            transpose(src, dst, rows, cols, r0, mid, c0, c1);
+            transpose(src, dst, rows, cols, mid, r1, c0, c1);
+        } else {
+            int mid = c0 + width / 2;
+            transpose(src, dst, rows, cols, r0, r1, c0, mid);
+            transpose(src, dst, rows, cols, r0, r1, mid, c1);
+        }
+    }
+}
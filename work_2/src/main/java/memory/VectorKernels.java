@@ -0,0 +1,198 @@
+package memory;
+
+/**
+ * Element-wise kernels over plain double and float arrays.
+ * When the jdk.incubator.vector module is present at runtime (java --add-modules jdk.incubator.vector)
+ * the kernels run on explicit SIMD lanes, otherwise they fall back to scalar loops.
+ * Setting the system property lae.simd=false forces the scalar loops.
+ */
+public final class VectorKernels {
+
+    private static final boolean SIMD = detectSimd();
+
+    private VectorKernels() {
+    }
+
+    public static boolean isSimdEnabled() {
+        return SIMD;
+    }
+
+    private static boolean detectSimd() {
+        if ("false".equalsIgnoreCase(System.getProperty("lae.simd"))) {
+            return false;
+        }
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return false;
+        }
+        try {
+            return SimdKernels.lanes() > 1;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+
+    // dst[dOff..dOff+len) += src[sOff..sOff+len)
+    public static void add(double[] dst, int dOff, double[] src, int sOff, int len) {
+        if (SIMD) {
+            SimdKernels.add(dst, dOff, src, sOff, len);
+        } else {
+            addScalar(dst, dOff, src, sOff, len);
+        }
+    }
+
+    // a[off..off+len) = -a[off..off+len)
+    public static void negate(double[] a, int off, int len) {
+        if (SIMD) {
+            SimdKernels.negate(a, off, len);
+        } else {
+            negateScalar(a, off, len);
+        }
+    }
+
+    // sum of a[aOff + i] * b[bOff + i] for i in [0, len)
+    public static double dot(double[] a, int aOff, double[] b, int bOff, int len) {
+        return SIMD ? SimdKernels.dot(a, aOff, b, bOff, len) : dotScalar(a, aOff, b, bOff, len);
+    }
+
+    // y[yOff..yOff+len) += alpha * x[xOff..xOff+len)
+    public static void axpy(double alpha, double[] x, int xOff, double[] y, int yOff, int len) {
+        if (SIMD) {
+            SimdKernels.axpy(alpha, x, xOff, y, yOff, len);
+        } else {
+            axpyScalar(alpha, x, xOff, y, yOff, len);
+        }
+    }
+
+    // four axpy updates sharing the same x: y[yOffK..] += alphaK * x[xOff..] for K = 0..3
+    public static void axpy4(double alpha0, double alpha1, double alpha2, double alpha3, double[] x, int xOff,
+            double[] y, int yOff0, int yOff1, int yOff2, int yOff3, int len) {
+        if (SIMD) {
+            SimdKernels.axpy4(alpha0, alpha1, alpha2, alpha3, x, xOff, y, yOff0, yOff1, yOff2, yOff3, len);
+        } else {
+            axpy4Scalar(alpha0, alpha1, alpha2, alpha3, x, xOff, y, yOff0, yOff1, yOff2, yOff3, len);
+        }
+    }
+
+    // float32 versions of the kernels above
+
+    public static void add(float[] dst, int dOff, float[] src, int sOff, int len) {
+        if (SIMD) {
+            SimdKernels.add(dst, dOff, src, sOff, len);
+        } else {
+            addScalar(dst, dOff, src, sOff, len);
+        }
+    }
+
+    public static void negate(float[] a, int off, int len) {
+        if (SIMD) {
+            SimdKernels.negate(a, off, len);
+        } else {
+            negateScalar(a, off, len);
+        }
+    }
+
+    // accumulates in float32
+    public static float dot(float[] a, int aOff, float[] b, int bOff, int len) {
+        return SIMD ? SimdKernels.dot(a, aOff, b, bOff, len) : dotScalar(a, aOff, b, bOff, len);
+    }
+
+    // float32 operands, float64 accumulator: no rounding error builds up over long vectors
+    public static double dotWide(float[] a, int aOff, float[] b, int bOff, int len) {
+        double result = 0.0;
+        for (int i = 0; i < len; i++) {
+            result += (double) a[aOff + i] * b[bOff + i];
+        }
+        return result;
+    }
+
+    public static void axpy(float alpha, float[] x, int xOff, float[] y, int yOff, int len) {
+        if (SIMD) {
+            SimdKernels.axpy(alpha, x, xOff, y, yOff, len);
+        } else {
+            axpyScalar(alpha, x, xOff, y, yOff, len);
+        }
+    }
+
+    public static void axpy4(float alpha0, float alpha1, float alpha2, float alpha3, float[] x, int xOff,
+            float[] y, int yOff0, int yOff1, int yOff2, int yOff3, int len) {
+        if (SIMD) {
+            SimdKernels.axpy4(alpha0, alpha1, alpha2, alpha3, x, xOff, y, yOff0, yOff1, yOff2, yOff3, len);
+        } else {
+            axpy4Scalar(alpha0, alpha1, alpha2, alpha3, x, xOff, y, yOff0, yOff1, yOff2, yOff3, len);
+        }
+    }
+
+    static void addScalar(double[] dst, int dOff, double[] src, int sOff, int len) {
+        for (int i = 0; i < len; i++) {
+            dst[dOff + i] += src[sOff + i];
+        }
+    }
+
+    static void negateScalar(double[] a, int off, int len) {
+        for (int i = off; i < off + len; i++) {
+            a[i] = -a[i];
+        }
+    }
+
+    static double dotScalar(double[] a, int aOff, double[] b, int bOff, int len) {
+        double result = 0.0;
+        for (int i = 0; i < len; i++) {
+            result += a[aOff + i] * b[bOff + i];
+        }
+        return result;
+    }
+
+    static void axpyScalar(double alpha, double[] x, int xOff, double[] y, int yOff, int len) {
+        for (int i = 0; i < len; i++) {
+            y[yOff + i] += alpha * x[xOff + i];
+        }
+    }
+
+    static void axpy4Scalar(double alpha0, double alpha1, double alpha2, double alpha3, double[] x, int xOff,
+            double[] y, int yOff0, int yOff1, int yOff2, int yOff3, int len) {
+        for (int i = 0; i < len; i++) {
+            double v = x[xOff + i];
+            y[yOff0 + i] += alpha0 * v;
+            y[yOff1 + i] += alpha1 * v;
+            y[yOff2 + i] += alpha2 * v;
+            y[yOff3 + i] += alpha3 * v;
+        }
+    }
+
+    static void addScalar(float[] dst, int dOff, float[] src, int sOff, int len) {
+        for (int i = 0; i < len; i++) {
+            dst[dOff + i] += src[sOff + i];
+        }
+    }
+
+    static void negateScalar(float[] a, int off, int len) {
+        for (int i = off; i < off + len; i++) {
+            a[i] = -a[i];
+        }
+    }
+
+    static float dotScalar(float[] a, int aOff, float[] b, int bOff, int len) {
+        float result = 0.0f;
+        for (int i = 0; i < len; i++) {
+            result += a[aOff + i] * b[bOff + i];
+        }
+        return result;
+    }
+
+    static void axpyScalar(float alpha, float[] x, int xOff, float[] y, int yOff, int len) {
+        for (int i = 0; i < len; i++) {
+            y[yOff + i] += alpha * x[xOff + i];
+        }
+    }
+
+    static void axpy4Scalar(float alpha0, float alpha1, float alpha2, float alpha3, float[] x, int xOff,
+            float[] y, int yOff0, int yOff1, int yOff2, int yOff3, int len) {
+        for (int i = 0; i < len; i++) {
+            float v = x[xOff + i];
+            y[yOff0 + i] += alpha0 * v;
+            y[yOff1 + i] += alpha1 * v;
+            y[yOff2 + i] += alpha2 * v;
+            y[yOff3 + i] += alpha3 * v;
+        }
+    }
+}
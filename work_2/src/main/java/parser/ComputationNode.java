@@ -1,12 +1,22 @@
 package parser;
 
+import java.util.Arrays;
 import java.util.List;
 
+import memory.SharedMatrix;
+import memory.SparseMatrix;
+import memory.TiledMatrix;
+import memory.TransposeKernel;
+
 public class ComputationNode {
 
     private ComputationNodeType nodeType;
     private List<ComputationNode> children = null;
     private double[][] matrix = null; // only used for MATRIX nodes
+    private SparseMatrix sparseMatrix = null; // replaces matrix for sparse MATRIX nodes
+    private SharedMatrix residentMatrix = null; // replaces matrix for results kept in engine storage
+    private TiledMatrix tiledMatrix = null; // replaces matrix for results of the TILED layout
+    private boolean transposed = false; // matrix holds the transpose of this node's value
 
     public ComputationNode(String operatorStr, List<ComputationNode> children) throws IllegalArgumentException {
         this.nodeType = mapOperator(operatorStr);
@@ -38,6 +48,11 @@ public class ComputationNode {
         this.matrix = matrix;
     }
 
+    public ComputationNode(SparseMatrix sparseMatrix) {
+        this.nodeType = ComputationNodeType.MATRIX;
+        this.sparseMatrix = sparseMatrix;
+    }
+
     public ComputationNodeType getNodeType() {
         return nodeType;
     }
@@ -85,17 +100,150 @@ public class ComputationNode {
      * Resolves this node by setting its type to MATRIX and storing the computed matrix.
      */
     public void resolve(double[][] matrix) {
+        resolve(matrix, false);
+    }
+
+    /**
+     * Resolves this node to a dense matrix that may be stored transposed, so that a transpose
+     * only needs to flip the flag instead of moving elements.
+     */
+    public void resolve(double[][] matrix, boolean transposed) {
         this.nodeType = ComputationNodeType.MATRIX;
         this.children = null;
         this.matrix = matrix;
+        this.sparseMatrix = null;
+        this.residentMatrix = null;
+        this.tiledMatrix = null;
+        this.transposed = transposed;
     }
 
-    public double[][] getMatrix() {
+    /**
+     * Resolves this node to a matrix kept in sparse form.
+     */
+    public void resolve(SparseMatrix sparseMatrix) {
+        this.nodeType = ComputationNodeType.MATRIX;
+        this.children = null;
+        this.matrix = null;
+        this.sparseMatrix = sparseMatrix;
+        this.residentMatrix = null;
+        this.tiledMatrix = null;
+        this.transposed = false;
+    }
+
+    /**
+     * Resolves this node to a matrix that stays in engine storage instead of being copied out to a
+     * double[][]. The node owns the handle: the step that consumes the node may update it in place.
+     */
+    public void resolve(SharedMatrix residentMatrix) {
+        this.nodeType = ComputationNodeType.MATRIX;
+        this.children = null;
+        this.matrix = null;
+        this.sparseMatrix = null;
+        this.residentMatrix = residentMatrix;
+        this.tiledMatrix = null;
+        this.transposed = false;
+    }
+
+    /**
+     * Resolves this node to a matrix kept in tiles between steps.
+     */
+    public void resolve(TiledMatrix tiledMatrix) {
+        this.nodeType = ComputationNodeType.MATRIX;
+        this.children = null;
+        this.matrix = null;
+        this.sparseMatrix = null;
+        this.residentMatrix = null;
+        this.tiledMatrix = tiledMatrix;
+        this.transposed = false;
+    }
+
+    public boolean isTiled() {
+        return tiledMatrix != null;
+    }
+
+    public TiledMatrix getTiledMatrix() {
+        if (tiledMatrix == null) {
+            throw new IllegalStateException("This node does not contain a tiled matrix.");
+        }
+        return tiledMatrix;
+    }
+
+    public boolean isResident() {
+        return residentMatrix != null;
+    }
+
+    public SharedMatrix getResidentMatrix() {
+        if (residentMatrix == null) {
+            throw new IllegalStateException("This node does not contain a resident matrix.");
+        }
+        return residentMatrix;
+    }
+
+    public boolean isTransposed() {
+        return transposed;
+    }
+
+    /**
+     * Returns the dense matrix as it is stored, i.e. the transpose of the value when isTransposed().
+     */
+    public double[][] getStoredMatrix() {
         if (matrix == null) {
             throw new IllegalStateException("This node does not contain a matrix.");
         }
         return matrix;
     }
 
+    public boolean isSparse() {
+        return sparseMatrix != null;
+    }
+
+    public SparseMatrix getSparseMatrix() {
+        if (sparseMatrix == null) {
+            throw new IllegalStateException("This node does not contain a sparse matrix.");
+        }
+        return sparseMatrix;
+    }
 
+    /**
+     * Returns the matrix in dense form, expanding a sparse matrix or copying out a resident or tiled one if needed.
+     * A matrix stored transposed is laid out row by row once, and kept that way.
+     */
+    public double[][] getMatrix() {
+        if (sparseMatrix != null) {
+            return sparseMatrix.toDense();
+        }
+        if (residentMatrix != null) {
+            return residentMatrix.readRowMajor();
+        }
+        if (tiledMatrix != null) {
+            return tiledMatrix.toRowMajor();
+        }
+        if (matrix == null) {
+            throw new IllegalStateException("This node does not contain a matrix.");
+        }
+        if (transposed) {
+            matrix = transposeOf(matrix);
+            transposed = false;
+        }
+        return matrix;
+    }
+
+    private static double[][] transposeOf(double[][] stored) {
+        int rows = stored.length;
+        int cols = (rows == 0) ? 0 : stored[0].length;
+        double[] packed = new double[rows * cols];
+        for (int row = 0; row < rows; row++) {
+            if (stored[row].length != cols) {
+                throw new IllegalArgumentException("All matrix rows must have the same length.");
+            }
+            System.arraycopy(stored[row], 0, packed, row * cols, cols);
+        }
+        double[] swapped = new double[packed.length];
+        TransposeKernel.transpose(packed, rows, cols, swapped);
+        double[][] result = new double[cols][];
+        for (int col = 0; col < cols; col++) {
+            result[col] = Arrays.copyOfRange(swapped, col * rows, (col + 1) * rows);
+        }
+        return result;
+    }
 }
\ No newline at end of file
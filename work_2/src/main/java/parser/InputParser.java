@@ -4,6 +4,8 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 
+import memory.SparseMatrix;
+
 import java.io.File;
 import java.io.IOException;
 import java.text.ParseException;
@@ -11,7 +13,26 @@ import java.util.*;
 
 public class InputParser {
 
+    // matrices with at most this fraction of non-zeros are kept in sparse form; sparse form is
+    // opt-in, since its kernels skip the zeros, which differs from the dense ones for NaN and infinity
+    public static final double DEFAULT_SPARSE_THRESHOLD = 0.0;
+
     private final ObjectMapper mapper = new ObjectMapper();
+    private final double sparseThreshold;
+
+    public InputParser() {
+        this(DEFAULT_SPARSE_THRESHOLD);
+    }
+
+    /**
+     * @param sparseThreshold largest density parsed into a SparseMatrix, 0 to always parse dense
+     */
+    public InputParser(double sparseThreshold) {
+        if (sparseThreshold < 0 || sparseThreshold > 1) {
+            throw new IllegalArgumentException("Sparse threshold must be between 0 and 1.");
+        }
+        this.sparseThreshold = sparseThreshold;
+    }
 
     public ComputationNode parse(String inputPath) throws ParseException {
         try {
@@ -44,9 +65,14 @@ public class InputParser {
             }
             // Otherwise, it's a matrix (2D array)
             else {
-                double[][] matrix = new double[jsonNode.size()][];
+                int height = jsonNode.size();
                 int width = jsonNode.get(0).size();
-                for (int i = 0; i < jsonNode.size(); i++) {
+                // Rows are collected in CSR form as long as the non-zeros fit the sparse budget,
+                // so a sparse matrix never exists in dense form.
+                long sparseBudget = (long) Math.floor(sparseThreshold * height * width);
+                SparseMatrix.Builder sparse = new SparseMatrix.Builder(width);
+                double[][] matrix = (sparseThreshold > 0 && width > 0) ? null : new double[height][];
+                for (int i = 0; i < height; i++) {
                     JsonNode rowJsonNode = jsonNode.get(i);
                     if (rowJsonNode.size() != width) {
                         throw new ParseException("Inconsistent row sizes in matrix.", 0);
@@ -54,10 +80,23 @@ public class InputParser {
                     if (!rowJsonNode.isArray()) {
                         throw new ParseException("Invalid matrix row: " + rowJsonNode.toString(), 0);
                     }
-                    matrix[i] = new double[rowJsonNode.size()];
+                    double[] row = new double[rowJsonNode.size()];
                     for (int j = 0; j < rowJsonNode.size(); j++) {
-                        matrix[i][j] = rowJsonNode.get(j).asDouble();
+                        row[j] = rowJsonNode.get(j).asDouble();
+                    }
+                    if (matrix != null) {
+                        matrix[i] = row;
+                        continue;
                     }
+                    sparse.appendRow(row);
+                    if (sparse.nonZeros() > sparseBudget) {
+                        // too dense: switch to the dense form for the rest of the matrix
+                        matrix = new double[height][];
+                        System.arraycopy(sparse.build().toDense(), 0, matrix, 0, i + 1);
+                    }
+                }
+                if (matrix == null) {
+                    return new ComputationNode(sparse.build());
                 }
                 return new ComputationNode(matrix);
             }
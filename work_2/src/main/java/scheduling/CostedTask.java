@@ -0,0 +1,25 @@
+package scheduling;
+
+/**
+ * A task that knows roughly how much work it is, in units of its own choosing (e.g. multiply-adds).
+ * Only costs within one batch are compared, so the units need not agree across batches.
+ * Tasks submitted as plain Runnables count as one unit each.
+ */
+public interface CostedTask extends Runnable {
+
+    long cost();
+
+    static CostedTask of(long cost, Runnable body) {
+        return new CostedTask() {
+            @Override
+            public long cost() {
+                return cost;
+            }
+
+            @Override
+            public void run() {
+                body.run();
+            }
+        };
+    }
+}
@@ -0,0 +1,10 @@
+package scheduling;
+/**
+ * Determines which TaskExecutor runs the tasks of the Linear Algebra Engine.
+ * With TIRED, a TiredExecutor hands them to a fixed pool of TiredThreads.
+ * With VIRTUAL, a VirtualThreadExecutor starts a virtual thread per task.
+ */
+public enum ExecutorBackend {
+    TIRED,
+    VIRTUAL
+}
@@ -0,0 +1,52 @@
+package scheduling;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Queued tasks of a TiredExecutor, one deque per job, taken in fair-share order: from the jobs
+ * of the highest priority with queued tasks, the one with the least virtual time. Both ends of
+ * the chosen job's deque can be taken, so owners and thieves keep their usual ends.
+ */
+final class FairShareQueue {
+
+    private final Map<JobState, ArrayDeque<Runnable>> byJob = new LinkedHashMap<>(); // only jobs with queued tasks
+
+    synchronized void addLast(JobState job, Runnable task) {
+        byJob.computeIfAbsent(job, key -> new ArrayDeque<>()).addLast(task);
+    }
+
+    synchronized Runnable pollFirst() {
+        JobState job = nextJob();
+        return (job == null) ? null : take(job, byJob.get(job).pollFirst());
+    }
+
+    synchronized Runnable pollLast() {
+        JobState job = nextJob();
+        return (job == null) ? null : take(job, byJob.get(job).pollLast());
+    }
+
+    synchronized boolean isEmpty() {
+        return byJob.isEmpty();
+    }
+
+    private JobState nextJob() {
+        JobState best = null;
+        for (JobState job : byJob.keySet()) {
+            int priority = job.job.getPriority();
+            if (best == null || priority > best.job.getPriority()
+                    || (priority == best.job.getPriority() && job.virtualTime.get() < best.virtualTime.get())) {
+                best = job;
+            }
+        }
+        return best;
+    }
+
+    private Runnable take(JobState job, Runnable task) {
+        if (byJob.get(job).isEmpty()) {
+            byJob.remove(job);
+        }
+        return task;
+    }
+}
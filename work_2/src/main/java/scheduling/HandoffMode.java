@@ -0,0 +1,14 @@
+package scheduling;
+/**
+ * Determines how an idle TiredThread waits for its next task.
+ * With BLOCKING, it blocks in a single-slot queue and every handoff pays for a park and an unpark.
+ * With SPINNING, it polls a single-slot mailbox with Thread.onSpinWait() for a few microseconds
+ * before parking, and a submitter fills the mailbox with one compare-and-set and claims the idle
+ * worker with another, so the handoff itself avoids the park, the unpark and the idle heap's lock,
+ * at the cost of busy idle cores. Queued tasks still pass through the executor's FairShareQueue,
+ * which is synchronized, so the submit path as a whole is not lock-free.
+ */
+public enum HandoffMode {
+    BLOCKING,
+    SPINNING
+}
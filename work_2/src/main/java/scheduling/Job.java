@@ -0,0 +1,44 @@
+package scheduling;
+
+/**
+ * A tenant of an executor, e.g. one client of a long-lived engine, that batches are submitted for.
+ * Queued tasks of a higher priority always run first. Among jobs of the same priority, workers
+ * share out their time in proportion to the weights: the next task comes from the job that has
+ * used the least time for its weight. A job only describes the tenant; each executor keeps its
+ * own accounting of the jobs it runs, so a job may be shared by any number of executors.
+ */
+public final class Job {
+
+    /**
+     * The job of batches submitted without one.
+     */
+    public static final Job DEFAULT = new Job("default", 1.0, 0);
+
+    private final String name;
+    private final double weight;
+    private final int priority;
+
+    public Job(String name, double weight, int priority) {
+        if (name == null) {
+            throw new IllegalArgumentException("Job name cannot be null");
+        }
+        if (!(weight > 0) || Double.isInfinite(weight)) {
+            throw new IllegalArgumentException("Job weight must be positive");
+        }
+        this.name = name;
+        this.weight = weight;
+        this.priority = priority;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getWeight() {
+        return weight;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+}
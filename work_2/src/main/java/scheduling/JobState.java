@@ -0,0 +1,27 @@
+package scheduling;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The accounting of one job on one executor. Jobs are plain descriptors that any number of
+ * executors may share, e.g. Job.DEFAULT, so every executor keeps its own state for each of them.
+ */
+final class JobState {
+
+    final Job job;
+    final AtomicLong timeUsed = new AtomicLong(0); // worker time spent on its tasks, duplicates included
+    final AtomicLong tasksRun = new AtomicLong(0);
+    final AtomicLong virtualTime = new AtomicLong(0); // time used divided by the weight, see TiredExecutor
+    final AtomicInteger outstanding = new AtomicInteger(0); // tasks submitted and not yet done
+
+    JobState(Job job) {
+        this.job = job;
+    }
+
+    // books nanos of worker time against the job
+    void charge(long nanos) {
+        timeUsed.addAndGet(nanos);
+        virtualTime.addAndGet((long) (nanos / job.getWeight()));
+    }
+}
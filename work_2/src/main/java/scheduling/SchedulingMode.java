@@ -0,0 +1,15 @@
+package scheduling;
+/**
+ * Determines how a TiredExecutor distributes tasks to its workers.
+ * With FATIGUE, the submitting thread hands every task to the least tired idle worker, one at a time.
+ * With WORK_STEALING, a batch is split into per-worker deques up front, least tired workers first,
+ * and workers that run out of tasks steal from the tail of the others' deques.
+ * With PROPORTIONAL, a batch is split up front by task cost, each worker getting a share of the total
+ * proportional to its throughput measured on earlier batches, so that all workers finish together;
+ * a worker that still runs out early steals as with WORK_STEALING.
+ */
+public enum SchedulingMode {
+    FATIGUE,
+    WORK_STEALING,
+    PROPORTIONAL
+}
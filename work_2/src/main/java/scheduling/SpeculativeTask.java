@@ -0,0 +1,43 @@
+package scheduling;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A task that a speculating TiredExecutor may run more than once, concurrently, to get past a slow worker.
+ * compute() must only write to buffers private to the calling thread; of all its attempts,
+ * only the first to finish has its result passed to commit(), exactly once.
+ * Attempts that lose may still be running after the batch has completed, so compute() must only
+ * read inputs that no later step changes or frees, e.g. private snapshots, and must not take locks
+ * whose behavior depends on the phase of a shared matrix.
+ */
+public interface SpeculativeTask<R> extends CostedTask {
+
+    R compute();
+
+    void commit(R result);
+
+    @Override
+    default void run() {
+        commit(compute());
+    }
+
+    static <R> SpeculativeTask<R> of(long cost, Supplier<R> compute, Consumer<R> commit) {
+        return new SpeculativeTask<R>() {
+            @Override
+            public long cost() {
+                return cost;
+            }
+
+            @Override
+            public R compute() {
+                return compute.get();
+            }
+
+            @Override
+            public void commit(R result) {
+                commit.accept(result);
+            }
+        };
+    }
+}
@@ -0,0 +1,103 @@
+package scheduling;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Runs the tasks of the Linear Algebra Engine on some pool of threads.
+ * Implemented by TiredExecutor on platform threads and by VirtualThreadExecutor on virtual threads.
+ */
+public interface TaskExecutor {
+
+    /**
+     * The operation that batches submitted without a name are counted under in the metrics.
+     */
+    String UNNAMED = "unnamed";
+
+    /**
+     * Runs a single task without waiting for it. The future completes once it has finished,
+     * exceptionally with its error if it failed.
+     */
+    default CompletableFuture<Void> submit(Runnable task) {
+        return submitBatch(List.of(task));
+    }
+
+    /**
+     * Starts running a batch of tasks and returns without waiting for them. The future completes once
+     * every task has finished, exceptionally with the first error if any task failed.
+     */
+    default CompletableFuture<Void> submitBatch(Iterable<Runnable> tasks) {
+        return submitBatch(UNNAMED, tasks);
+    }
+
+    /**
+     * Like submitBatch(tasks), with the latencies of the batch counted under the given operation.
+     */
+    default CompletableFuture<Void> submitBatch(String operation, Iterable<Runnable> tasks) {
+        return submitBatch(Job.DEFAULT, operation, tasks);
+    }
+
+    /**
+     * Like submitBatch(operation, tasks), for the given job.
+     */
+    CompletableFuture<Void> submitBatch(Job job, String operation, Iterable<Runnable> tasks);
+
+    /**
+     * Runs a batch of tasks and waits until all have finished, rethrowing the first error.
+     * May be called from inside a task.
+     */
+    default void submitAll(Iterable<Runnable> tasks) {
+        join(submitBatch(tasks));
+    }
+
+    default void submitAll(String operation, Iterable<Runnable> tasks) {
+        join(submitBatch(operation, tasks));
+    }
+
+    default void submitAll(Job job, String operation, Iterable<Runnable> tasks) {
+        join(submitBatch(job, operation, tasks));
+    }
+
+    /**
+     * Starts running a subtask, typically from inside another task; join it with join(future).
+     */
+    default CompletableFuture<Void> fork(Runnable task) {
+        return submitBatch(List.of(task));
+    }
+
+    /**
+     * Waits for a future returned by fork or submitBatch and rethrows its error.
+     */
+    default void join(CompletableFuture<Void> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Executor interrupted while waiting for tasks", e);
+        } catch (ExecutionException e) {
+            Throwable error = e.getCause();
+            if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            } else if (error instanceof Error) {
+                throw (Error) error;
+            } else {
+                throw new RuntimeException(error);
+            }
+        }
+    }
+
+    void shutdown();
+
+    String getWorkerReport();
+
+    /**
+     * Tasks of the job that this executor has finished so far; 0 for a job it has never seen.
+     */
+    long getTasksRun(Job job);
+
+    /**
+     * The latency histograms of the tasks run so far as JSON, see TaskMetrics.
+     */
+    String getMetricsJson();
+}
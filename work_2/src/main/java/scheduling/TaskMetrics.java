@@ -0,0 +1,124 @@
+package scheduling;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Latency histograms of an executor: per worker, the service time of the tasks it ran and how long
+ * they waited between submission and start; per operation (the name a batch was submitted under),
+ * the same two plus the makespan of its batches, from submission until the last task finished.
+ * The histograms of an operation are looked up once per batch, so recording a task never allocates.
+ */
+public class TaskMetrics {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * The histograms of one operation.
+     */
+    public static final class Operation {
+        final LatencyHistogram service = new LatencyHistogram();
+        final LatencyHistogram queueWait = new LatencyHistogram();
+        final LatencyHistogram makespan = new LatencyHistogram();
+    }
+
+    private final LatencyHistogram[] workerService;
+    private final LatencyHistogram[] workerQueueWait;
+    private final Map<String, Operation> operations = new ConcurrentHashMap<>();
+
+    /**
+     * With no workers, e.g. for tasks on threads of their own, only the operations are tracked.
+     */
+    public TaskMetrics(int workers) {
+        workerService = new LatencyHistogram[workers];
+        workerQueueWait = new LatencyHistogram[workers];
+        for (int i = 0; i < workers; i++) {
+            workerService[i] = new LatencyHistogram();
+            workerQueueWait[i] = new LatencyHistogram();
+        }
+    }
+
+    public Operation operation(String name) {
+        return operations.computeIfAbsent(name, key -> new Operation());
+    }
+
+    /**
+     * A task of the operation that waited queueWait ns and then ran for service ns on worker,
+     * which is ignored if it is not one of the tracked workers.
+     */
+    public void recordTask(int worker, Operation operation, long queueWait, long service) {
+        if (worker >= 0 && worker < workerService.length) {
+            workerService[worker].record(service);
+            workerQueueWait[worker].record(queueWait);
+        }
+        operation.service.record(service);
+        operation.queueWait.record(queueWait);
+    }
+
+    public void recordBatch(Operation operation, long makespan) {
+        operation.makespan.record(makespan);
+    }
+
+    /**
+     * One line per worker and per histogram of each operation, with the quantiles in ns.
+     */
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        for (int i = 0; i < workerService.length; i++) {
+            appendLine(report, "Worker " + i + " service", workerService[i]);
+            appendLine(report, "Worker " + i + " queue wait", workerQueueWait[i]);
+        }
+        for (Map.Entry<String, Operation> entry : new TreeMap<>(operations).entrySet()) {
+            appendLine(report, entry.getKey() + " service", entry.getValue().service);
+            appendLine(report, entry.getKey() + " queue wait", entry.getValue().queueWait);
+            appendLine(report, entry.getKey() + " makespan", entry.getValue().makespan);
+        }
+        return report.toString();
+    }
+
+    private static void appendLine(StringBuilder report, String name, LatencyHistogram histogram) {
+        report.append(String.format("%s: Count = %d, p50 = %d ns, p99 = %d ns, p999 = %d ns, Max = %d ns\n",
+                name, histogram.getCount(), histogram.quantile(0.5), histogram.quantile(0.99),
+                histogram.quantile(0.999), histogram.getMax()));
+    }
+
+    /**
+     * The same histograms as a JSON object: {"workers": [{"id", "service", "queueWait"}, ...],
+     * "operations": {name: {"service", "queueWait", "makespan"}, ...}}, each histogram with its
+     * count, mean, p50, p99, p999 and max in ns.
+     */
+    public String toJson() {
+        ObjectNode root = mapper.createObjectNode();
+        ArrayNode workers = root.putArray("workers");
+        for (int i = 0; i < workerService.length; i++) {
+            ObjectNode worker = workers.addObject();
+            worker.put("id", i);
+            worker.set("service", toJson(workerService[i]));
+            worker.set("queueWait", toJson(workerQueueWait[i]));
+        }
+        ObjectNode byName = root.putObject("operations");
+        for (Map.Entry<String, Operation> entry : new TreeMap<>(operations).entrySet()) {
+            ObjectNode operation = byName.putObject(entry.getKey());
+            operation.set("service", toJson(entry.getValue().service));
+            operation.set("queueWait", toJson(entry.getValue().queueWait));
+            operation.set("makespan", toJson(entry.getValue().makespan));
+        }
+        return root.toString();
+    }
+
+    private static ObjectNode toJson(LatencyHistogram histogram) {
+        ObjectNode node = mapper.createObjectNode();
+        node.put("count", histogram.getCount());
+        node.put("mean", histogram.getMean());
+        node.put("p50", histogram.quantile(0.5));
+        node.put("p99", histogram.quantile(0.99));
+        node.put("p999", histogram.quantile(0.999));
+        node.put("max", histogram.getMax());
+        return node;
+    }
+}
@@ -1,103 +1,689 @@
 package scheduling;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
-public class TiredExecutor {
+public class TiredExecutor implements TaskExecutor {
 
     private final TiredThread[] workers;
     private final PriorityBlockingQueue<TiredThread> idleMinHeap = new PriorityBlockingQueue<>();
-    private final AtomicInteger inFlight = new AtomicInteger(0);
-    private final Object lock = new Object();
-    private Throwable firstError = null;
+    private final HandoffMode handoffMode;
+    // SPINNING only: 1 for each idle worker, claimed with a CAS instead of going through idleMinHeap
+    private final AtomicIntegerArray idleFlags;
+    // FATIGUE only: tasks waiting for an idle worker, taken by workers as they finish. Every task
+    // passes through it under its lock, in either handoff mode.
+    private final FairShareQueue pending = new FairShareQueue();
+    private final SchedulingMode mode;
+    // WORK_STEALING and PROPORTIONAL: one queue per worker, the owner takes from the head and thieves
+    // from the tail. Each holds a deque per job, so jobs get their fair share in every mode.
+    private final List<FairShareQueue> deques = new ArrayList<>();
+    private final AtomicInteger queued = new AtomicInteger(0); // tasks waiting in the deques
+    private final Object wakeUp = new Object(); // idle WORK_STEALING workers wait here
+    private final AtomicInteger sleepers = new AtomicInteger(0); // workers waiting on wakeUp, or about to
+    private volatile boolean stopping = false;
+    // PROPORTIONAL only: throughput of each worker relative to the others, 1.0 on average; guarded by itself
+    private final double[] throughput;
+    private static final double CALIBRATION_SMOOTHING = 0.3; // weight of the newest batch in throughput
+    // speculation: a SpeculativeTask running much longer than the finished tasks of its batch is duplicated
+    private final boolean speculative;
+    private static final double STRAGGLER_SLOWDOWN = 2.0; // times the median task time that makes a straggler
+    private static final long MIN_STRAGGLER_NANOS = 1_000_000; // shorter tasks are never worth duplicating
+    private static final long SPECULATION_POLL_MILLIS = 1; // how often the watcher looks for stragglers
+    private static final long HELP_WAIT_NANOS = 50_000; // how often a joining worker looks for tasks to help with
+    private final Set<Batch> watched = ConcurrentHashMap.newKeySet(); // unfinished batches with speculative tasks
+    private final Thread watcher; // looks for stragglers in the watched batches, null without speculation
+    private final TaskMetrics metrics;
+    private final Map<Job, JobState> jobs = new ConcurrentHashMap<>(); // every job seen, with its accounting here
+    private final Set<JobState> activeJobs = new HashSet<>(); // jobs with outstanding tasks; guarded by itself
 
-    private void recordFirstError(Throwable t) {
-        if (t == null) {
-            return;
-        }
-        synchronized (lock) {
-            if (firstError == null) {
-                firstError = t;
-            }
+    // the attempts of one SpeculativeTask, of which the first to finish settles it
+    private static final class Speculation {
+        final SpeculativeTask<Object> task;
+        final AtomicBoolean settled = new AtomicBoolean(false);
+        final AtomicLong started = new AtomicLong(0); // when the first attempt started, 0 before
+        volatile long duration = 0; // from the first start until settled
+        boolean duplicated = false; // only touched by the watcher
+
+        @SuppressWarnings("unchecked")
+        Speculation(SpeculativeTask<?> task) {
+            this.task = (SpeculativeTask<Object>) task;
         }
     }
 
-    private Throwable consumeFirstError() {
-        synchronized (lock) {
-            Throwable error = firstError;
-            firstError = null;
-            return error;
+    // completion tracking of one submitted batch, independent of any other batch in flight
+    private static final class Batch {
+        final AtomicInteger remaining = new AtomicInteger(0);
+        final AtomicReference<Throwable> firstError = new AtomicReference<>();
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        final List<Speculation> speculations; // null unless the executor speculates
+        final AtomicLongArray cost; // PROPORTIONAL only: cost of the tasks each worker ran
+        final AtomicLongArray busy; // PROPORTIONAL only: time each worker spent on the batch
+        final TaskMetrics.Operation operation; // where the latencies of its tasks are recorded
+        final JobState job;
+        final long submitted = System.nanoTime();
+
+        Batch(JobState job, TaskMetrics.Operation operation, List<Speculation> speculations, int workers,
+                boolean calibrated) {
+            this.job = job;
+            this.operation = operation;
+            this.speculations = speculations;
+            this.cost = calibrated ? new AtomicLongArray(workers) : null;
+            this.busy = calibrated ? new AtomicLongArray(workers) : null;
         }
     }
 
     public TiredExecutor(int numThreads) {
+        this(numThreads, SchedulingMode.FATIGUE);
+    }
+
+    public TiredExecutor(int numThreads, SchedulingMode mode) {
+        this(numThreads, mode, false);
+    }
+
+    /**
+     * With speculative set, straggling SpeculativeTasks are duplicated on idle workers
+     * once most of their batch has finished.
+     */
+    public TiredExecutor(int numThreads, SchedulingMode mode, boolean speculative) {
+        this(numThreads, mode, speculative, HandoffMode.BLOCKING);
+    }
+
+    public TiredExecutor(int numThreads, SchedulingMode mode, boolean speculative, HandoffMode handoffMode) {
         if (numThreads <= 0) {
             throw new IllegalArgumentException("Number of threads must be positive");
         }
+        if (mode == null) {
+            throw new IllegalArgumentException("Scheduling mode cannot be null");
+        }
+        if (handoffMode == null) {
+            throw new IllegalArgumentException("Handoff mode cannot be null");
+        }
+        this.handoffMode = handoffMode;
+        this.idleFlags = new AtomicIntegerArray(numThreads);
+        this.mode = mode;
+        this.speculative = speculative;
+        this.metrics = new TaskMetrics(numThreads);
         // Nir:
         workers = new TiredThread[numThreads];
+        throughput = new double[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            deques.add(new FairShareQueue());
+        }
         for (int i = 0; i < numThreads; i++) {
-            workers[i] = new TiredThread(i, 0.5 + Math.random()); // a random value in the range 0.5–1.5
+            double fatigueFactor = 0.5 + Math.random(); // a random value in the range 0.5–1.5
+            workers[i] = new TiredThread(i, fatigueFactor, (mode == SchedulingMode.FATIGUE) ? null : this::nextTask,
+                    handoffMode);
+            // until a worker has been measured, the more it tires the slower it is taken to be
+            throughput[i] = 1.0 / fatigueFactor;
             workers[i].start();
-            idleMinHeap.add(workers[i]);
+            releaseIdle(workers[i]);
+        }
+        normalize(throughput);
+        if (speculative) {
+            watcher = new Thread(this::watch, "speculation");
+            watcher.setDaemon(true);
+            watcher.start();
+        } else {
+            watcher = null;
         }
     }
 
-    public void submit(Runnable task) {
-        try {
-            TiredThread worker = idleMinHeap.take();
-            inFlight.incrementAndGet();
+    /**
+     * Batches are tracked separately, so any number of them, from any threads, can share the workers.
+     * Queued tasks of different jobs are taken in fair-share order, see Job.
+     */
+    @Override
+    public CompletableFuture<Void> submitBatch(Job job, String operation, Iterable<Runnable> tasks) {
+        if (job == null) {
+            throw new IllegalArgumentException("Job cannot be null");
+        }
+        List<Runnable> batch = new ArrayList<>();
+        for (Runnable task : tasks) {
+            batch.add(task);
+        }
+        JobState state = jobs.computeIfAbsent(job, JobState::new);
+        Batch tracker = new Batch(state, metrics.operation(operation), speculative ? new ArrayList<>() : null, workers.length,
+                mode == SchedulingMode.PROPORTIONAL);
+        if (batch.isEmpty()) {
+            tracker.done.complete(null);
+            return tracker.done;
+        }
+        // counted up front, so that no task can complete the batch while the rest is being handed out
+        tracker.remaining.set(batch.size());
+        activate(state, batch.size());
+        List<Runnable> tracked = new ArrayList<>(batch.size());
+        for (Runnable task : batch) {
+            tracked.add(track(task, tracker));
+        }
+        if (tracker.speculations != null && !tracker.speculations.isEmpty()) {
+            watched.add(tracker);
+            synchronized (watched) {
+                watched.notifyAll();
+            }
+        }
+        if (mode == SchedulingMode.FATIGUE) {
+            for (Runnable task : tracked) {
+                pending.addLast(state, task);
+            }
+            drain();
+        } else {
+            seed(batch, tracked, state);
+        }
+        return tracker.done;
+    }
+
+    // A job that had nothing outstanding starts again from the least virtual time of the active
+    // jobs, so that neither its idle time nor a fresh start buys it the workers for a while.
+    private void activate(JobState job, int tasks) {
+        synchronized (activeJobs) {
+            if (job.outstanding.getAndAdd(tasks) == 0) {
+                long least = Long.MAX_VALUE;
+                for (JobState active : activeJobs) {
+                    least = Math.min(least, active.virtualTime.get());
+                }
+                if (least != Long.MAX_VALUE) {
+                    job.virtualTime.accumulateAndGet(least, Math::max);
+                }
+                activeJobs.add(job);
+            }
+        }
+    }
 
+    // FATIGUE: hands pending tasks to the least tired idle workers until either runs out.
+    // Called by submitters after queueing and by workers after going idle, so that a task queued
+    // while every worker was busy is picked up by the first one to finish.
+    private void drain() {
+        while (!pending.isEmpty()) {
+            TiredThread worker = pollIdle();
+            if (worker == null) {
+                return;
+            }
+            Runnable task = pending.pollFirst();
+            if (task == null) {
+                releaseIdle(worker);
+                return;
+            }
             worker.newTask(() -> {
                 try {
                     task.run();
-                } catch (Throwable t) {
-                    recordFirstError(t);
                 } finally {
-                    if (inFlight.decrementAndGet() == 0) {
-                        synchronized (lock) {
-                            lock.notifyAll(); // Notify submitAll waiter
-                        }
-                    }
-                    idleMinHeap.add(worker);
+                    releaseIdle(worker);
+                    drain();
                 }
             });
+        }
+    }
+
+    // wraps a task of a batch for running on a worker; with speculation on, a SpeculativeTask
+    // is also registered in the batch so that the watcher can look after it
+    private Runnable track(Runnable task, Batch batch) {
+        if (batch.speculations == null || !(task instanceof SpeculativeTask)) {
+            return () -> runTracked(task, batch);
+        }
+        Speculation speculation = new Speculation((SpeculativeTask<?>) task);
+        batch.speculations.add(speculation);
+        return () -> runAttempt(speculation, batch);
+    }
+
+    // runs a task of a batch, keeping its error and completing the batch after the last one
+    private void runTracked(Runnable task, Batch batch) {
+        long start = System.nanoTime();
+        try {
+            task.run();
+        } catch (Throwable t) {
+            batch.firstError.compareAndSet(null, t);
+        } finally {
+            long end = System.nanoTime();
+            metrics.recordTask(currentWorkerId(), batch.operation, start - batch.submitted, end - start);
+            charge(batch, start, costOf(task));
+            taskDone(batch);
+        }
+    }
+
+    // one attempt of a speculative task: computes privately, then commits only if no other attempt
+    // finished first. The winner counts the task as done, whether it succeeded or failed.
+    private void runAttempt(Speculation speculation, Batch batch) {
+        if (speculation.settled.get()) {
+            return; // a duplicate that started too late
+        }
+        long start = System.nanoTime();
+        speculation.started.compareAndSet(0, start);
+        Object result;
+        try {
+            result = speculation.task.compute();
+        } catch (Throwable t) {
+            charge(batch, start, 0);
+            if (settle(speculation)) {
+                recordAttempt(speculation, batch, start);
+                batch.firstError.compareAndSet(null, t);
+                taskDone(batch);
+            }
+            return;
+        }
+        if (settle(speculation)) {
+            try {
+                speculation.task.commit(result);
+            } catch (Throwable t) {
+                batch.firstError.compareAndSet(null, t);
+            } finally {
+                recordAttempt(speculation, batch, start);
+                charge(batch, start, costOf(speculation.task));
+                taskDone(batch);
+            }
+        } else {
+            charge(batch, start, 0); // the time of a losing attempt bought nothing
+        }
+    }
+
+    // the winning attempt stands for its task: queue wait until the first attempt started,
+    // service time of the attempt itself
+    private void recordAttempt(Speculation speculation, Batch batch, long start) {
+        metrics.recordTask(currentWorkerId(), batch.operation, speculation.started.get() - batch.submitted,
+                System.nanoTime() - start);
+    }
+
+    private static boolean settle(Speculation speculation) {
+        if (!speculation.settled.compareAndSet(false, true)) {
+            return false;
+        }
+        speculation.duration = System.nanoTime() - speculation.started.get();
+        return true;
+    }
+
+    // books the time since start against the job of the batch, and for PROPORTIONAL, with the cost
+    // done, against the worker that ran the task, which need not be the one it was planned for
+    private static void charge(Batch batch, long start, long cost) {
+        batch.job.charge(System.nanoTime() - start);
+        if (batch.busy != null && Thread.currentThread() instanceof TiredThread) {
+            int worker = ((TiredThread) Thread.currentThread()).getWorkerId();
+            batch.busy.addAndGet(worker, System.nanoTime() - start);
+            batch.cost.addAndGet(worker, cost);
+        }
+    }
+
+    private void taskDone(Batch batch) {
+        JobState job = batch.job;
+        job.tasksRun.incrementAndGet();
+        if (job.outstanding.decrementAndGet() == 0) {
+            synchronized (activeJobs) {
+                if (job.outstanding.get() == 0) {
+                    activeJobs.remove(job);
+                }
+            }
+        }
+        if (batch.remaining.decrementAndGet() != 0) {
+            return;
+        }
+        metrics.recordBatch(batch.operation, System.nanoTime() - batch.submitted);
+        watched.remove(batch);
+        if (batch.cost != null) {
+            calibrate(batch);
+        }
+        Throwable error = batch.firstError.get();
+        if (error != null) {
+            batch.done.completeExceptionally(error);
+        } else {
+            batch.done.complete(null);
+        }
+    }
+
+    // speculation watcher: every SPECULATION_POLL_MILLIS, looks for stragglers in the unfinished batches
+    private void watch() {
+        try {
+            while (!stopping) {
+                synchronized (watched) {
+                    while (watched.isEmpty() && !stopping) {
+                        watched.wait();
+                    }
+                }
+                Thread.sleep(SPECULATION_POLL_MILLIS);
+                for (Batch batch : watched) {
+                    speculate(batch);
+                }
+            }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            throw new RuntimeException("Executor interrupted while waiting for worker", e);
         }
     }
 
-    public void submitAll(Iterable<Runnable> tasks) {
-        // TODO: submit tasks one by one and wait until all finish
-        // Nir: ask for advice in office hours.
+    // Once at least half of a batch has settled, duplicates every attempt that has been running for
+    // longer than STRAGGLER_SLOWDOWN times the median of the settled ones, as long as workers are idle.
+    private void speculate(Batch batch) {
+        List<Speculation> speculations = batch.speculations;
+        long[] durations = new long[speculations.size()];
+        int settled = 0;
+        for (Speculation speculation : speculations) {
+            if (speculation.settled.get()) {
+                durations[settled++] = speculation.duration;
+            }
+        }
+        if (settled == speculations.size() || settled * 2 < speculations.size()) {
+            return;
+        }
+        Arrays.sort(durations, 0, settled);
+        long limit = Math.max(MIN_STRAGGLER_NANOS, (long) (STRAGGLER_SLOWDOWN * durations[settled / 2]));
+        long now = System.nanoTime();
+        for (Speculation speculation : speculations) {
+            long started = speculation.started.get();
+            if (speculation.duplicated || speculation.settled.get() || started == 0 || now - started <= limit) {
+                continue;
+            }
+            if (!launchDuplicate(speculation, batch)) {
+                return; // no idle worker left
+            }
+            speculation.duplicated = true;
+        }
+    }
+
+    // runs another attempt on an idle worker, if there is one; never counted in its batch
+    private boolean launchDuplicate(Speculation speculation, Batch batch) {
+        if (mode == SchedulingMode.FATIGUE) {
+            TiredThread worker = pollIdle();
+            if (worker == null) {
+                return false;
+            }
+            worker.newTask(() -> {
+                try {
+                    runAttempt(speculation, batch);
+                } finally {
+                    releaseIdle(worker);
+                    drain();
+                }
+            });
+            return true;
+        }
+        for (int i = 0; i < workers.length; i++) {
+            if (!workers[i].isBusy() && deques.get(i).isEmpty()) {
+                deques.get(i).addLast(batch.job, () -> runAttempt(speculation, batch));
+                queued.incrementAndGet();
+                wakeSleepers();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // WORK_STEALING and PROPORTIONAL: fills the per-worker deques with the tracked tasks, split by
+    // splitByCount or splitByCost. The submitting thread never waits for a worker to be idle.
+    private void seed(List<Runnable> batch, List<Runnable> tracked, JobState job) {
+        List<Integer> indices = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            indices.add(i);
+        }
+        List<List<Integer>> parts = (mode == SchedulingMode.PROPORTIONAL) ? splitByCost(indices, batch)
+                : splitByCount(indices);
+        for (int w = 0; w < workers.length; w++) {
+            for (int index : parts.get(w)) {
+                deques.get(w).addLast(job, tracked.get(index));
+            }
+        }
+        queued.addAndGet(batch.size());
+        wakeSleepers();
+    }
+
+    // WORK_STEALING: contiguous chunks of equal length, the first ones to the least tired workers
+    private List<List<Integer>> splitByCount(List<Integer> batch) {
+        // fatigue keeps changing while workers run, so the order is taken from a snapshot
+        double[] fatigue = new double[workers.length];
+        Integer[] order = new Integer[workers.length];
+        List<List<Integer>> parts = new ArrayList<>();
+        for (int i = 0; i < workers.length; i++) {
+            fatigue[i] = workers[i].getFatigue();
+            order[i] = i;
+            parts.add(List.of());
+        }
+        Arrays.sort(order, Comparator.comparingDouble(i -> fatigue[i]));
+        int chunk = (batch.size() + workers.length - 1) / workers.length;
+        for (int k = 0; k * chunk < batch.size(); k++) {
+            parts.set(order[k], batch.subList(k * chunk, Math.min(batch.size(), (k + 1) * chunk)));
+        }
+        return parts;
+    }
+
+    // PROPORTIONAL: contiguous chunks whose costs are in proportion to the workers' throughput,
+    // each task going to the worker whose share its midpoint falls in
+    private List<List<Integer>> splitByCost(List<Integer> batch, List<Runnable> tasks) {
+        double[] weights;
+        synchronized (throughput) {
+            weights = throughput.clone();
+        }
+        double totalWeight = 0;
+        List<List<Integer>> parts = new ArrayList<>();
+        for (int i = 0; i < workers.length; i++) {
+            totalWeight += weights[i];
+            parts.add(List.of());
+        }
+        long totalCost = 0;
         for (Runnable task : tasks) {
-            submit(task);
+            totalCost += costOf(task);
+        }
+        double share = 0; // fraction of the total cost covered by the workers filled so far
+        double done = 0; // cost of the tasks handed out so far
+        int next = 0;
+        for (int i = 0; i < workers.length && next < batch.size(); i++) {
+            share += weights[i] / totalWeight;
+            int start = next;
+            boolean last = (i == workers.length - 1);
+            while (next < batch.size() && (last || done + costOf(tasks.get(next)) / 2.0 <= share * totalCost)) {
+                done += costOf(tasks.get(next));
+                next++;
+            }
+            parts.set(i, batch.subList(start, next));
+        }
+        return parts;
+    }
+
+    private static long costOf(Runnable task) {
+        return (task instanceof CostedTask) ? Math.max(1, ((CostedTask) task).cost()) : 1;
+    }
+
+    // PROPORTIONAL: folds the throughput each worker showed on a finished batch, cost done per ns
+    // spent on the batch, into its running estimate. Only ratios between workers matter, so the
+    // estimates are kept at an average of 1.0 whatever the cost units of the batch were.
+    private void calibrate(Batch batch) {
+        double[] rates = new double[workers.length];
+        double sum = 0;
+        int measured = 0;
+        for (int i = 0; i < workers.length; i++) {
+            long used = batch.busy.get(i);
+            long done = batch.cost.get(i);
+            if (done > 0 && used > 0) {
+                rates[i] = (double) done / used;
+                sum += rates[i];
+                measured++;
+            }
+        }
+        if (measured < 2) {
+            return; // a single worker says nothing about the others
         }
-        synchronized (lock) {
-            while (inFlight.get() != 0) {
+        synchronized (throughput) {
+            double mean = 0;
+            for (int i = 0; i < workers.length; i++) {
+                if (rates[i] > 0) {
+                    mean += throughput[i];
+                }
+            }
+            mean /= measured;
+            // measured workers keep their average, so unmeasured ones keep their standing
+            for (int i = 0; i < workers.length; i++) {
+                if (rates[i] > 0) {
+                    double relative = mean * rates[i] * measured / sum;
+                    throughput[i] += CALIBRATION_SMOOTHING * (relative - throughput[i]);
+                }
+            }
+            normalize(throughput);
+        }
+    }
+
+    private static void normalize(double[] values) {
+        double sum = 0;
+        for (double value : values) {
+            sum += value;
+        }
+        for (int i = 0; i < values.length; i++) {
+            values[i] *= values.length / sum;
+        }
+    }
+
+    // task source of the pulling modes: the worker's own deque first, then the tail of the others'.
+    // PROPORTIONAL workers steal too, so that a worker held up by another batch does not hold up its share.
+    private Runnable nextTask(TiredThread worker) throws InterruptedException {
+        while (true) {
+            Runnable task = pollTask(worker.getWorkerId());
+            if (task != null) {
+                return task;
+            }
+            if (handoffMode == HandoffMode.SPINNING) {
+                long deadline = System.nanoTime() + TiredThread.SPIN_NANOS;
+                while (queued.get() <= 0 && !stopping && System.nanoTime() < deadline) {
+                    Thread.onSpinWait();
+                }
+                if (queued.get() > 0) {
+                    continue;
+                }
+            }
+            synchronized (wakeUp) {
+                // counted before the last look at queued, so that seeding either sees a sleeper or is seen
+                sleepers.incrementAndGet();
                 try {
-                    lock.wait();
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    throw new RuntimeException("Executor interrupted while waiting for tasks", e);
+                    if (stopping) {
+                        return null;
+                    }
+                    if (queued.get() <= 0) {
+                        wakeUp.wait();
+                    }
+                } finally {
+                    sleepers.decrementAndGet();
                 }
             }
         }
-        Throwable error = consumeFirstError();
-        if (error != null) {
-            if (error instanceof RuntimeException) {
-                throw (RuntimeException) error;
-            } else if (error instanceof Error) {
-                throw (Error) error;
-            } else {
-                throw new RuntimeException(error);
+    }
+
+    // after queueing tasks: only takes the lock when some worker may be waiting for them
+    private void wakeSleepers() {
+        if (sleepers.get() > 0) {
+            synchronized (wakeUp) {
+                wakeUp.notifyAll();
+            }
+        }
+    }
+
+    // FATIGUE: claims the least tired idle worker, or returns null if all are busy
+    private TiredThread pollIdle() {
+        if (handoffMode == HandoffMode.BLOCKING) {
+            return idleMinHeap.poll();
+        }
+        while (true) {
+            int best = -1;
+            for (int i = 0; i < workers.length; i++) {
+                if (idleFlags.get(i) == 1 && (best < 0 || workers[i].getFatigue() < workers[best].getFatigue())) {
+                    best = i;
+                }
+            }
+            if (best < 0) {
+                return null;
+            }
+            if (idleFlags.compareAndSet(best, 1, 0)) {
+                return workers[best];
+            }
+        }
+    }
+
+    private void releaseIdle(TiredThread worker) {
+        if (handoffMode == HandoffMode.BLOCKING) {
+            idleMinHeap.add(worker);
+        } else {
+            idleFlags.set(worker.getWorkerId(), 1);
+        }
+    }
+
+    // a queued task for worker self to run, or null if there is none right now
+    private Runnable pollTask(int self) {
+        if (mode == SchedulingMode.FATIGUE) {
+            return pending.pollFirst();
+        }
+        Runnable task = deques.get(self).pollFirst();
+        for (int k = 1; task == null && k < workers.length; k++) {
+            task = deques.get((self + k) % workers.length).pollLast();
+        }
+        if (task != null) {
+            queued.decrementAndGet();
+        }
+        return task;
+    }
+
+    // the worker of this executor running the calling thread, or null
+    private TiredThread currentWorker() {
+        Thread thread = Thread.currentThread();
+        if (thread instanceof TiredThread) {
+            int id = ((TiredThread) thread).getWorkerId();
+            if (id >= 0 && id < workers.length && workers[id] == thread) {
+                return workers[id];
+            }
+        }
+        return null;
+    }
+
+    private int currentWorkerId() {
+        TiredThread self = currentWorker();
+        return (self == null) ? -1 : self.getWorkerId();
+    }
+
+    /**
+     * Called from one of the workers, e.g. by a task waiting for its subtasks, the worker keeps
+     * running queued tasks while it waits, so nested tasks cannot deadlock even when every worker
+     * is waiting on a child.
+     */
+    @Override
+    public void join(CompletableFuture<Void> future) {
+        TiredThread self = currentWorker();
+        if (self != null && !future.isDone()) {
+            future.whenComplete((result, error) -> LockSupport.unpark(self));
+            while (!future.isDone()) {
+                Runnable task = pollTask(self.getWorkerId());
+                if (task != null) {
+                    task.run();
+                } else {
+                    // the rest is running elsewhere: sleep until it completes or new work may have arrived
+                    LockSupport.parkNanos(HELP_WAIT_NANOS);
+                }
             }
         }
+        TaskExecutor.super.join(future);
     }
 
+    @Override
+    public void submitAll(Iterable<Runnable> tasks) {
+        // TODO: submit tasks one by one and wait until all finish
+        // Nir: ask for advice in office hours.
+        join(submitBatch(tasks));
+    }
+
+    @Override
     public void shutdown() {
         // TODO
+        synchronized (wakeUp) {
+            stopping = true;
+            wakeUp.notifyAll();
+        }
+        synchronized (watched) {
+            watched.notifyAll();
+        }
         try {
             for (TiredThread worker : workers) {
                 worker.shutdown();
@@ -105,12 +691,16 @@ public class TiredExecutor {
             for (TiredThread worker : workers) {
                 worker.join();
             }
+            if (watcher != null) {
+                watcher.join();
+            }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new RuntimeException("Executor interrupted while waiting for tasks", e);
         }
     }
 
+    @Override
     public synchronized String getWorkerReport() {
         // TODO: return readable statistics for each worker
         StringBuilder report = new StringBuilder();
@@ -118,6 +708,28 @@ public class TiredExecutor {
             report.append(String.format("Worker %d: Time Used = %d ns, Time Idle = %d ns\n",
                     worker.getWorkerId(), worker.getTimeUsed(), worker.getTimeIdle()));
         }
+        long total = 0;
+        for (JobState state : jobs.values()) {
+            total += state.timeUsed.get();
+        }
+        for (JobState state : jobs.values()) {
+            Job job = state.job;
+            report.append(String.format("Job %s (weight %.2f, priority %d): Tasks = %d, Time Used = %d ns, "
+                    + "Share = %.1f%%\n", job.getName(), job.getWeight(), job.getPriority(), state.tasksRun.get(),
+                    state.timeUsed.get(), (total == 0) ? 0.0 : 100.0 * state.timeUsed.get() / total));
+        }
+        report.append(metrics.getReport());
         return report.toString();
     }
+
+    @Override
+    public long getTasksRun(Job job) {
+        JobState state = jobs.get(job);
+        return (state == null) ? 0 : state.tasksRun.get();
+    }
+
+    @Override
+    public String getMetricsJson() {
+        return metrics.toJson();
+    }
 }
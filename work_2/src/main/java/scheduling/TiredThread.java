@@ -4,6 +4,8 @@ import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
 public class TiredThread extends Thread implements Comparable<TiredThread> {
 
@@ -17,6 +19,23 @@ public class TiredThread extends Thread implements Comparable<TiredThread> {
     // Single-slot handoff queue; executor will put tasks here
     private final BlockingQueue<Runnable> handoff = new ArrayBlockingQueue<>(1);
 
+    // Where the worker pulls its tasks from instead of the handoff queue, null to use the queue
+    private final TaskSource source;
+
+    // SPINNING handoff: single-slot mailbox written by one submitter with a CAS, instead of the queue
+    private final HandoffMode handoffMode;
+    private final AtomicReference<Runnable> slot = new AtomicReference<>();
+    private volatile boolean parked = false; // set before the worker parks on an empty slot
+    static final long SPIN_NANOS = 20_000; // how long an idle SPINNING worker spins before parking
+
+    /**
+     * Supplies the tasks of a worker that pulls its work, e.g. from work-stealing deques.
+     */
+    interface TaskSource {
+        // blocks until a task is available; returns null once the worker should exit
+        Runnable next(TiredThread worker) throws InterruptedException;
+    }
+
     private final AtomicBoolean busy = new AtomicBoolean(false); // Indicates if the worker is currently executing a task
 
     private final AtomicLong timeUsed = new AtomicLong(0); // Total time spent executing tasks
@@ -24,7 +43,13 @@ public class TiredThread extends Thread implements Comparable<TiredThread> {
     private final AtomicLong idleStartTime = new AtomicLong(0); // Timestamp when the worker last became idle
 
     public TiredThread(int id, double fatigueFactor) {
+        this(id, fatigueFactor, null, HandoffMode.BLOCKING);
+    }
+
+    TiredThread(int id, double fatigueFactor, TaskSource source, HandoffMode handoffMode) {
         this.id = id;
+        this.source = source;
+        this.handoffMode = handoffMode;
         // Normalize fatigue factor to be between 0.5 and 1.5
         this.fatigueFactor = Math.max(0.5, Math.min(fatigueFactor, 1.5));
         
@@ -58,17 +83,61 @@ public class TiredThread extends Thread implements Comparable<TiredThread> {
      * it throws IllegalStateException.
      */
     public void newTask(Runnable task) {
+        if (handoffMode == HandoffMode.SPINNING) {
+            if (!slot.compareAndSet(null, task)) {
+                throw new IllegalStateException("Worker is not ready to accept a new task");
+            }
+            // the worker sets parked before its last look at the slot, so one of the two sees the other
+            if (parked) {
+                LockSupport.unpark(this);
+            }
+            return;
+        }
         if (!handoff.offer(task)) {
             throw new IllegalStateException("Worker is not ready to accept a new task");
         }
     }
 
+    // SPINNING: waits for the slot to fill, spinning for SPIN_NANOS before parking
+    private Runnable takeFromSlot() throws InterruptedException {
+        long deadline = System.nanoTime() + SPIN_NANOS;
+        while (true) {
+            Runnable task = slot.getAndSet(null);
+            if (task != null) {
+                return task;
+            }
+            if (System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+                continue;
+            }
+            parked = true;
+            task = slot.getAndSet(null);
+            if (task == null) {
+                LockSupport.park(this);
+            }
+            parked = false;
+            if (task != null) {
+                return task;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
     /**
      * Request this worker to stop after finishing current task.
      * Inserts a poison pill so the worker wakes up and exits.
      */
     public void shutdown() throws InterruptedException {
         alive.set(false);
+        if (handoffMode == HandoffMode.SPINNING) {
+            while (!slot.compareAndSet(null, POISON_PILL)) {
+                Thread.onSpinWait(); // the worker empties the slot as soon as it is idle
+            }
+            LockSupport.unpark(this);
+            return;
+        }
         handoff.put(POISON_PILL);
     }
 
@@ -77,14 +146,15 @@ public class TiredThread extends Thread implements Comparable<TiredThread> {
         while (alive.get()) {
             try {
                 // 1. Wait for a task (blocks until available)
-                Runnable task = handoff.take();
+                Runnable task = (source != null) ? source.next(this)
+                        : (handoffMode == HandoffMode.SPINNING) ? takeFromSlot() : handoff.take();
                 
                 // 2. Update idle time (we just stopped being idle)
                 long currentTime = System.nanoTime();
                 timeIdle.addAndGet(currentTime - idleStartTime.get());
 
                 // 3. Check if it's the poison pill (shutdown signal)
-                if (task == POISON_PILL) {
+                if (task == POISON_PILL || task == null) {
                     break;  // Exit the loop
                 }
 
@@ -0,0 +1,157 @@
+package scheduling;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs every task on a virtual thread of its own instead of handing it to a pool of TiredThreads.
+ * Starting a virtual thread costs about as much as a queue handoff, and a task that blocks, e.g.
+ * waiting for its subtasks, unmounts from its carrier instead of holding it.
+ * At most numThreads tasks run at once, so the engine's thread count bounds the work in flight;
+ * the carriers themselves are the JDK's virtual-thread scheduler, sized with
+ * -Djdk.virtualThreadScheduler.parallelism.
+ * Jobs are only accounted for: tasks take the permits in the order they ask for them, whatever
+ * their job, since there is no queue of its own to reorder.
+ */
+public class VirtualThreadExecutor implements TaskExecutor {
+
+    private final int numThreads;
+    private final ExecutorService threads = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("task-", 0).factory());
+    private final Semaphore running; // one permit per task allowed to run at once
+    private final ThreadLocal<Boolean> insideTask = ThreadLocal.withInitial(() -> false);
+
+    private final AtomicLong tasksRun = new AtomicLong(0);
+    private final AtomicLong timeUsed = new AtomicLong(0); // total time spent executing tasks
+    private final AtomicLong timeWaiting = new AtomicLong(0); // total time tasks waited for a permit
+    private final TaskMetrics metrics = new TaskMetrics(0); // no workers to tell apart
+    private final Map<Job, JobState> jobs = new ConcurrentHashMap<>(); // every job seen, with its accounting here
+
+    public VirtualThreadExecutor(int numThreads) {
+        if (numThreads <= 0) {
+            throw new IllegalArgumentException("Number of threads must be positive");
+        }
+        this.numThreads = numThreads;
+        this.running = new Semaphore(numThreads);
+    }
+
+    @Override
+    public CompletableFuture<Void> submitBatch(Job job, String operation, Iterable<Runnable> tasks) {
+        if (job == null) {
+            throw new IllegalArgumentException("Job cannot be null");
+        }
+        JobState state = jobs.computeIfAbsent(job, JobState::new);
+        TaskMetrics.Operation stats = metrics.operation(operation);
+        long submitted = System.nanoTime();
+        List<Runnable> batch = new ArrayList<>();
+        for (Runnable task : tasks) {
+            batch.add(task);
+        }
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        if (batch.isEmpty()) {
+            done.complete(null);
+            return done;
+        }
+        AtomicInteger remaining = new AtomicInteger(batch.size());
+        AtomicReference<Throwable> firstError = new AtomicReference<>();
+        for (Runnable task : batch) {
+            threads.execute(() -> {
+                long queuedAt = System.nanoTime();
+                running.acquireUninterruptibly();
+                long start = System.nanoTime();
+                timeWaiting.addAndGet(start - queuedAt);
+                insideTask.set(true);
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    firstError.compareAndSet(null, t);
+                } finally {
+                    insideTask.set(false);
+                    long end = System.nanoTime();
+                    timeUsed.addAndGet(end - start);
+                    tasksRun.incrementAndGet();
+                    state.charge(end - start);
+                    state.tasksRun.incrementAndGet();
+                    metrics.recordTask(-1, stats, start - submitted, end - start);
+                    running.release();
+                    if (remaining.decrementAndGet() == 0) {
+                        metrics.recordBatch(stats, end - submitted);
+                        Throwable error = firstError.get();
+                        if (error != null) {
+                            done.completeExceptionally(error);
+                        } else {
+                            done.complete(null);
+                        }
+                    }
+                }
+            });
+        }
+        return done;
+    }
+
+    /**
+     * Called from inside a task, the task gives up its permit while it waits, so that its
+     * subtasks can run even when every permit is held by a waiting parent.
+     */
+    @Override
+    public void join(CompletableFuture<Void> future) {
+        boolean inside = insideTask.get();
+        if (inside) {
+            running.release();
+        }
+        try {
+            TaskExecutor.super.join(future);
+        } finally {
+            if (inside) {
+                running.acquireUninterruptibly();
+            }
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        threads.shutdown();
+        try {
+            threads.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Executor interrupted while waiting for tasks", e);
+        }
+    }
+
+    @Override
+    public String getWorkerReport() {
+        return String.format("Virtual threads (at most %d running): Tasks = %d, Time Used = %d ns, Time Waiting = %d ns\n",
+                numThreads, tasksRun.get(), timeUsed.get(), timeWaiting.get()) + jobReport() + metrics.getReport();
+    }
+
+    private String jobReport() {
+        StringBuilder report = new StringBuilder();
+        for (JobState state : jobs.values()) {
+            Job job = state.job;
+            report.append(String.format("Job %s (weight %.2f, priority %d): Tasks = %d, Time Used = %d ns\n",
+                    job.getName(), job.getWeight(), job.getPriority(), state.tasksRun.get(), state.timeUsed.get()));
+        }
+        return report.toString();
+    }
+
+    @Override
+    public long getTasksRun(Job job) {
+        JobState state = jobs.get(job);
+        return (state == null) ? 0 : state.tasksRun.get();
+    }
+
+    @Override
+    public String getMetricsJson() {
+        return metrics.toJson();
+    }
+}
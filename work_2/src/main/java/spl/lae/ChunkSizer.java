@@ -0,0 +1,82 @@
+package spl.lae;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import parser.ComputationNodeType;
+import scheduling.CostedTask;
+import scheduling.SpeculativeTask;
+
+/**
+ * Decides how many rows each task of a row-parallel operation covers.
+ * A task should cost no more than about TARGET_TASK_NANOS, and a batch should give every worker at
+ * least TASKS_PER_WORKER tasks to balance with, whichever asks for smaller tasks. The cost of a row
+ * is its units of work (elements, or multiply-adds for a product) times a per-operation cost per
+ * unit, which every finished task refines with its measured time.
+ */
+class ChunkSizer {
+
+    static final long TARGET_TASK_NANOS = 100_000;
+    static final int TASKS_PER_WORKER = 4; // slack left for balancing uneven workers
+    private static final double INITIAL_NANOS_PER_UNIT = 1.0; // until an operation has been measured
+    private static final double SMOOTHING = 0.2; // weight of the newest measurement in the running average
+
+    private final int workers;
+    private final Map<ComputationNodeType, Double> nanosPerUnit = new EnumMap<>(ComputationNodeType.class);
+
+    ChunkSizer(int workers) {
+        this.workers = Math.max(1, workers);
+    }
+
+    /**
+     * Rows per task for rows rows of unitsPerRow units each, never more than maxRows and at least one.
+     * Tasks are cut at the target cost, and never so large that a worker gets fewer than
+     * TASKS_PER_WORKER of them while there are rows enough to go round.
+     */
+    int rowsPerTask(ComputationNodeType type, int rows, long unitsPerRow, int maxRows) {
+        if (rows <= 1) {
+            return 1;
+        }
+        double rowNanos = Math.max(Double.MIN_VALUE, nanosPerUnit(type) * Math.max(1, unitsPerRow));
+        long byCost = (long) Math.ceil(TARGET_TASK_NANOS / rowNanos);
+        long tasks = (long) workers * TASKS_PER_WORKER;
+        long byBalance = (rows + tasks - 1) / tasks;
+        long chunk = Math.min(Math.min(byCost, byBalance), Math.min(rows, maxRows));
+        return (int) Math.max(1, chunk);
+    }
+
+    synchronized double nanosPerUnit(ComputationNodeType type) {
+        return nanosPerUnit.getOrDefault(type, INITIAL_NANOS_PER_UNIT);
+    }
+
+    // folds the measured time of a task of units units into the running average of its operation
+    synchronized void record(ComputationNodeType type, long units, long nanos) {
+        if (units <= 0) {
+            return;
+        }
+        double sample = (double) nanos / units;
+        Double previous = nanosPerUnit.get(type);
+        nanosPerUnit.put(type, (previous == null) ? sample : previous + SMOOTHING * (sample - previous));
+    }
+
+    // wraps body so that its running time is recorded when it completes; units is also its cost
+    CostedTask measured(ComputationNodeType type, long units, Runnable body) {
+        return CostedTask.of(units, () -> {
+            long start = System.nanoTime();
+            body.run();
+            record(type, units, System.nanoTime() - start);
+        });
+    }
+
+    // speculative version of measured: every attempt records the time of its compute
+    <R> SpeculativeTask<R> measured(ComputationNodeType type, long units, Supplier<R> compute, Consumer<R> commit) {
+        return SpeculativeTask.of(units, () -> {
+            long start = System.nanoTime();
+            R result = compute.get();
+            record(type, units, System.nanoTime() - start);
+            return result;
+        }, commit);
+    }
+}
@@ -0,0 +1,242 @@
+package spl.lae;
+
+import java.nio.file.Path;
+
+import memory.Precision;
+import memory.StorageLayout;
+import memory.TiledMatrix;
+import parser.InputParser;
+import scheduling.ExecutorBackend;
+import scheduling.HandoffMode;
+import scheduling.SchedulingMode;
+
+/**
+ * Optional settings of the Linear Algebra Engine.
+ * On the command line they follow the three positional arguments as <code>--name=value</code> pairs.
+ */
+public class EngineConfig {
+
+    private StorageLayout storageLayout = StorageLayout.CONTIGUOUS;
+    private Precision precision = Precision.DOUBLE;
+    private int strassenThreshold = 0; // smallest square size multiplied with Strassen, 0 disables it
+    private double sparseThreshold = InputParser.DEFAULT_SPARSE_THRESHOLD; // densest input kept sparse
+    private SchedulingMode schedulingMode = SchedulingMode.FATIGUE;
+    private ExecutorBackend executorBackend = ExecutorBackend.TIRED;
+    private HandoffMode handoffMode = HandoffMode.BLOCKING;
+    private int tileSize = TiledMatrix.DEFAULT_TILE_SIZE; // side of the square blocks of the TILED layout
+    private Path spillDirectory = null; // where MAPPED matrices create their temp files, null for java.io.tmpdir
+    private boolean speculative = false; // duplicate straggling multiply tasks on idle workers
+    private Path metricsFile = null; // where Main writes the latency histograms, null for nowhere
+
+    public StorageLayout getStorageLayout() {
+        return storageLayout;
+    }
+
+    public EngineConfig setStorageLayout(StorageLayout storageLayout) {
+        if (storageLayout == null) {
+            throw new IllegalArgumentException("Storage layout cannot be null.");
+        }
+        this.storageLayout = storageLayout;
+        return this;
+    }
+
+    public Precision getPrecision() {
+        return precision;
+    }
+
+    public EngineConfig setPrecision(Precision precision) {
+        if (precision == null) {
+            throw new IllegalArgumentException("Precision cannot be null.");
+        }
+        this.precision = precision;
+        return this;
+    }
+
+    public int getStrassenThreshold() {
+        return strassenThreshold;
+    }
+
+    public EngineConfig setStrassenThreshold(int strassenThreshold) {
+        if (strassenThreshold < 0) {
+            throw new IllegalArgumentException("Strassen threshold cannot be negative.");
+        }
+        this.strassenThreshold = strassenThreshold;
+        return this;
+    }
+
+    public double getSparseThreshold() {
+        return sparseThreshold;
+    }
+
+    public EngineConfig setSparseThreshold(double sparseThreshold) {
+        if (sparseThreshold < 0 || sparseThreshold > 1) {
+            throw new IllegalArgumentException("Sparse threshold must be between 0 and 1.");
+        }
+        this.sparseThreshold = sparseThreshold;
+        return this;
+    }
+
+    public SchedulingMode getSchedulingMode() {
+        return schedulingMode;
+    }
+
+    public EngineConfig setSchedulingMode(SchedulingMode schedulingMode) {
+        if (schedulingMode == null) {
+            throw new IllegalArgumentException("Scheduling mode cannot be null.");
+        }
+        this.schedulingMode = schedulingMode;
+        return this;
+    }
+
+    public ExecutorBackend getExecutorBackend() {
+        return executorBackend;
+    }
+
+    public EngineConfig setExecutorBackend(ExecutorBackend executorBackend) {
+        if (executorBackend == null) {
+            throw new IllegalArgumentException("Executor backend cannot be null.");
+        }
+        this.executorBackend = executorBackend;
+        return this;
+    }
+
+    public HandoffMode getHandoffMode() {
+        return handoffMode;
+    }
+
+    public EngineConfig setHandoffMode(HandoffMode handoffMode) {
+        if (handoffMode == null) {
+            throw new IllegalArgumentException("Handoff mode cannot be null.");
+        }
+        this.handoffMode = handoffMode;
+        return this;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public EngineConfig setTileSize(int tileSize) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("Tile size must be positive.");
+        }
+        this.tileSize = tileSize;
+        return this;
+    }
+
+    public Path getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    public EngineConfig setSpillDirectory(Path spillDirectory) {
+        this.spillDirectory = spillDirectory;
+        return this;
+    }
+
+    public Path getMetricsFile() {
+        return metricsFile;
+    }
+
+    public EngineConfig setMetricsFile(Path metricsFile) {
+        this.metricsFile = metricsFile;
+        return this;
+    }
+
+    public boolean isSpeculative() {
+        return speculative;
+    }
+
+    public EngineConfig setSpeculative(boolean speculative) {
+        this.speculative = speculative;
+        return this;
+    }
+
+    /**
+     * Builds a configuration from <code>--name=value</code> options, e.g. <code>--storage=off-heap</code>.
+     */
+    public static EngineConfig parse(String[] options) {
+        EngineConfig config = new EngineConfig();
+        for (String option : options) {
+            int eq = option.indexOf('=');
+            if (!option.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Invalid option: " + option + " (expected --name=value)");
+            }
+            String name = option.substring(2, eq);
+            String value = option.substring(eq + 1);
+            switch (name) {
+                case "storage":
+                    config.setStorageLayout(parseEnum(StorageLayout.class, name, value));
+                    break;
+                case "precision":
+                    config.setPrecision(parseEnum(Precision.class, name, value));
+                    break;
+                case "strassen":
+                    config.setStrassenThreshold(value.equals("off") ? 0 : parseInt(name, value));
+                    break;
+                case "scheduler":
+                    config.setSchedulingMode(parseEnum(SchedulingMode.class, name, value));
+                    break;
+                case "executor":
+                    config.setExecutorBackend(parseEnum(ExecutorBackend.class, name, value));
+                    break;
+                case "handoff":
+                    config.setHandoffMode(parseEnum(HandoffMode.class, name, value));
+                    break;
+                case "tile":
+                    config.setTileSize(parseInt(name, value));
+                    break;
+                case "spill-dir":
+                    config.setSpillDirectory(Path.of(value));
+                    break;
+                case "metrics":
+                    config.setMetricsFile(Path.of(value));
+                    break;
+                case "speculate":
+                    config.setSpeculative(parseSwitch(name, value));
+                    break;
+                case "sparse":
+                    config.setSparseThreshold(value.equals("off") ? 0 : parseDouble(name, value));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + option);
+            }
+        }
+        return config;
+    }
+
+    private static int parseInt(String name, String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for --" + name + ": " + value);
+        }
+    }
+
+    private static boolean parseSwitch(String name, String value) {
+        switch (value.trim()) {
+            case "on":
+                return true;
+            case "off":
+                return false;
+            default:
+                throw new IllegalArgumentException("Invalid value for --" + name + ": " + value);
+        }
+    }
+
+    private static double parseDouble(String name, String value) {
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for --" + name + ": " + value);
+        }
+    }
+
+    // accepts enum constants in any case, with '-' in place of '_'
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String name, String value) {
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase().replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid value for --" + name + ": " + value);
+        }
+    }
+}
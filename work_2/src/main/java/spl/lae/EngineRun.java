@@ -0,0 +1,682 @@
+package spl.lae;
+
+import parser.*;
+import memory.*;
+import scheduling.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * One call of LinearAlgebraEngine.run: the operand matrices of the current step, and the steps
+ * that resolve the computation tree one node at a time. The executor, buffer pool, arena and
+ * chunk sizer belong to the engine and are shared by all of its runs, so any number of runs can
+ * proceed at once, each with its own operands.
+ */
+class EngineRun {
+
+    private SharedMatrix leftMatrix;
+    private SharedMatrix rightMatrix;
+    private final TaskExecutor executor;
+    private final EngineConfig config;
+    private final BufferArena arena; // owns the memory of OFF_HEAP and MAPPED matrices, null otherwise
+    private final BufferPool pool; // recycles the arrays of dead intermediates
+    private final ChunkSizer chunkSizer; // rows per task, tuned by the measured task times
+    private final boolean speculative; // row tasks of a multiplication may be duplicated by the executor
+    private final Job job; // every batch of the run is submitted for it
+
+    // body of a task over the rows (or vectors) [from, to)
+    private interface RowRange {
+        void run(int from, int to);
+    }
+
+    // first half of a task over rows [from, to) that computes them into a private buffer...
+    private interface RowCompute<R> {
+        R compute(int from, int to);
+    }
+
+    // ...and its second half, which writes the buffer back
+    private interface RowCommit<R> {
+        void commit(int from, int to, R rows);
+    }
+
+    EngineRun(TaskExecutor executor, EngineConfig config, BufferArena arena, BufferPool pool, ChunkSizer chunkSizer,
+            boolean speculative, Job job) {
+        this.executor = executor;
+        this.config = config;
+        this.arena = arena;
+        this.pool = pool;
+        this.chunkSizer = chunkSizer;
+        this.speculative = speculative;
+        this.job = job;
+        this.leftMatrix = newOperandMatrix();
+        this.rightMatrix = newOperandMatrix();
+    }
+
+    // submits a batch for the job of the run; virtual threads never outlive one task, so their tasks
+    // borrow the scratch buffers of earlier tasks rather than growing fresh ones
+    private void submitAll(String operation, List<Runnable> tasks) {
+        if (config.getExecutorBackend() == ExecutorBackend.VIRTUAL) {
+            List<Runnable> pooled = new ArrayList<>(tasks.size());
+            for (Runnable task : tasks) {
+                pooled.add(() -> ScratchBuffers.runPooled(task));
+            }
+            tasks = pooled;
+        }
+        executor.submitAll(job, operation, tasks);
+    }
+
+    private SharedMatrix newOperandMatrix() {
+        // TILED runs keep their results in TiledMatrix form; the row matrices only back the public task builders
+        StorageLayout layout = (config.getStorageLayout() == StorageLayout.TILED) ? StorageLayout.CONTIGUOUS
+                : config.getStorageLayout();
+        SharedMatrix matrix = (arena != null) ? new SharedMatrix(arena) : new SharedMatrix(layout, config.getPrecision());
+        matrix.setBufferPool(pool);
+        return matrix;
+    }
+
+    // MAPPED runs stream their operands from the temp files instead of packing them on the heap
+    private boolean spillsResults() {
+        return config.getStorageLayout() == StorageLayout.MAPPED;
+    }
+
+    ComputationNode run(ComputationNode computationRoot) {
+        // Iteratively locate the next resolvable node: a node whose operands are
+        // already concrete matrices.
+        try {
+            while (true) {
+                if (computationRoot.getNodeType() == ComputationNodeType.MATRIX) {
+                    if (computationRoot.isResident()) {
+                        // only the final result is materialized; its storage goes back to the pool or arena
+                        SharedMatrix resident = computationRoot.getResidentMatrix();
+                        computationRoot.resolve(resident.readRowMajor());
+                        resident.unload();
+                    } else if (computationRoot.isTiled()) {
+                        computationRoot.resolve(computationRoot.getTiledMatrix().toRowMajor());
+                    }
+                    return computationRoot;
+                }
+                ComputationNode resolvable = computationRoot.findResolvable();
+                if (resolvable == null) {
+                    // throw error - no resolvable node found
+                    throw new IllegalArgumentException("No resolvable node found in computation tree.");
+                }
+                List<ComputationNode> operands = resolvable.getChildren();
+                if (hasSparseOperand(resolvable)) {
+                    computeSparse(resolvable);
+                    // a resident dense operand was copied out for the sparse kernels
+                    recycle(operands);
+                    continue;
+                }
+                if (config.getStorageLayout() == StorageLayout.TILED) {
+                    computeTiled(resolvable);
+                    continue;
+                }
+                if (resolvable.getNodeType() == ComputationNodeType.TRANSPOSE) {
+                    transposeView(resolvable);
+                    continue;
+                }
+                loadAndCompute(resolvable);
+                // the result stays in the left shared matrix (M1): the node takes over the handle,
+                // so the next step that reads it starts without copying anything.
+                resolvable.resolve(leftMatrix);
+                leftMatrix = newOperandMatrix();
+                // the right operand is dead, its storage goes back to the pool or arena
+                rightMatrix.unload();
+            }
+        } finally {
+            // the pool and arena outlive the run, its last operands go back to them, and so do the
+            // results of earlier steps that a failed step left attached to the tree
+            leftMatrix.unload();
+            rightMatrix.unload();
+            unloadResidents(computationRoot);
+        }
+    }
+
+    private void unloadResidents(ComputationNode node) {
+        if (node.isResident()) {
+            node.getResidentMatrix().unload();
+        }
+        if (node.getChildren() != null) {
+            for (ComputationNode child : node.getChildren()) {
+                unloadResidents(child);
+            }
+        }
+    }
+
+    private void recycle(List<ComputationNode> operands) {
+        for (ComputationNode operand : operands) {
+            if (operand.isResident()) {
+                operand.getResidentMatrix().unload();
+            }
+        }
+    }
+
+    private void loadUnaryOperand(ComputationNode node) {
+        checkUnaryOperand(node);
+        leftMatrix = loadOperand(leftMatrix, node.getChildren().get(0));
+    }
+
+    // Returns the matrix holding the operand. A resident operand is used as it is, zero-copy: its node
+    // is consumed by this step, so the matrix can be updated in place. An input matrix is loaded into
+    // target, as a view if it is transposed.
+    private SharedMatrix loadOperand(SharedMatrix target, ComputationNode operand) {
+        if (operand.isResident()) {
+            SharedMatrix resident = operand.getResidentMatrix();
+            if (spillsResults() && resident.getOrientation() == VectorOrientation.COLUMN_MAJOR) {
+                // the streaming kernels read row by row; the copy goes tile by tile, off the heap
+                target.loadRowMajor(resident);
+                resident.unload();
+                return target;
+            }
+            target.unload();
+            return resident;
+        }
+        if (operand.isTransposed() && !spillsResults()) {
+            target.adoptRowMajor(operand.getStoredMatrix());
+            target.transpose();
+        } else {
+            target.adoptRowMajor(operand.getMatrix());
+        }
+        return target;
+    }
+
+    // A transpose moves no data and runs no tasks: the result shares the operand's storage,
+    // only with the orientation flipped. The operand node is consumed by this step.
+    private void transposeView(ComputationNode node) {
+        checkUnaryOperand(node);
+        ComputationNode operand = node.getChildren().get(0);
+        if (operand.isResident()) {
+            SharedMatrix matrix = operand.getResidentMatrix();
+            matrix.transpose();
+            node.resolve(matrix);
+        } else {
+            node.resolve(operand.getStoredMatrix(), !operand.isTransposed());
+        }
+    }
+
+    private void checkUnaryOperand(ComputationNode node) {
+        // Precondition: node must be a unary operation
+        if (node.getNodeType() != ComputationNodeType.NEGATE && node.getNodeType() != ComputationNodeType.TRANSPOSE) {
+            throw new IllegalArgumentException("Node must be a unary operation (NEGATE or TRANSPOSE).");
+        }
+        List<ComputationNode> children = node.getChildren();
+        if (children.size() != 1) {
+            throw new IllegalArgumentException("Node must have exactly one child.");
+        }
+        ComputationNode left = children.get(0);
+        if (left.getNodeType() != ComputationNodeType.MATRIX) {
+            throw new IllegalArgumentException("Child must be a MATRIX node.");
+        }
+    }
+
+    private void loadBinaryOperand(ComputationNode node) {
+        checkBinaryOperand(node);
+        leftMatrix = loadOperand(leftMatrix, node.getChildren().get(0));
+        rightMatrix = loadOperand(rightMatrix, node.getChildren().get(1));
+    }
+
+    private void checkBinaryOperand(ComputationNode node) {
+        // Precondition: node must be a binary operation
+        if (node.getNodeType() != ComputationNodeType.ADD && node.getNodeType() != ComputationNodeType.MULTIPLY) {
+            throw new IllegalArgumentException("Node must be a binary operation (ADD or MULTIPLY).");
+        }
+        List<ComputationNode> children = node.getChildren();
+        if (children.size() != 2) {
+            throw new IllegalArgumentException("Node must have exactly two children.");
+        }
+        ComputationNode left = children.get(0);
+        ComputationNode right = children.get(1);
+        if (left.getNodeType() != ComputationNodeType.MATRIX || right.getNodeType() != ComputationNodeType.MATRIX) {
+            throw new IllegalArgumentException("Both children must be MATRIX nodes.");
+        }
+    }
+
+    private boolean hasSparseOperand(ComputationNode node) {
+        for (ComputationNode child : node.getChildren()) {
+            if (child.isSparse()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Operations with a sparse operand run on the CSR kernels, split into row-block tasks where
+    // the kernel allows it. A dense operand is updated in place: its node is consumed by this step.
+    private void computeSparse(ComputationNode node) {
+        ComputationNodeType type = node.getNodeType();
+        if (type == ComputationNodeType.NEGATE || type == ComputationNodeType.TRANSPOSE) {
+            checkUnaryOperand(node);
+            final SparseMatrix operand = node.getChildren().get(0).getSparseMatrix();
+            final SparseMatrix[] result = new SparseMatrix[1];
+            submitAll(type.name(), List.of(() -> result[0] = (type == ComputationNodeType.NEGATE)
+                    ? operand.negate() : operand.transpose()));
+            resolveSparse(node, result[0]);
+            return;
+        }
+        checkBinaryOperand(node);
+        ComputationNode left = node.getChildren().get(0);
+        ComputationNode right = node.getChildren().get(1);
+        List<Runnable> tasks;
+        if (type == ComputationNodeType.ADD && left.isSparse() && right.isSparse()) {
+            final SparseMatrix[] result = new SparseMatrix[1];
+            submitAll(type.name(),
+                    List.of(() -> result[0] = left.getSparseMatrix().add(right.getSparseMatrix())));
+            resolveSparse(node, result[0]);
+        } else if (type == ComputationNodeType.ADD) {
+            final SparseMatrix sparse = left.isSparse() ? left.getSparseMatrix() : right.getSparseMatrix();
+            final double[][] dense = left.isSparse() ? right.getMatrix() : left.getMatrix();
+            if (dense.length == 0) {
+                throw new IllegalStateException("Matrices must not be empty for addition.");
+            }
+            if (dense.length != sparse.rowCount() || dense[0].length != sparse.columnCount()) {
+                throw new IllegalArgumentException("Incompatible matrix dimensions for addition.");
+            }
+            tasks = rowTasks(type, dense.length, averageRowNonZeros(sparse), Integer.MAX_VALUE,
+                    (from, to) -> sparse.addRowsTo(dense, from, to));
+            submitAll(type.name(), tasks);
+            node.resolve(dense);
+        } else if (left.isSparse() && right.isSparse()) {
+            final SparseMatrix a = left.getSparseMatrix();
+            final SparseMatrix b = right.getSparseMatrix();
+            if (a.columnCount() != b.rowCount()) {
+                throw new IllegalArgumentException("Incompatible matrix dimensions for multiplication.");
+            }
+            // every task stores its block at the index of its first row
+            final SparseMatrix[] blocks = new SparseMatrix[a.rowCount()];
+            tasks = rowTasks(type, a.rowCount(), averageRowNonZeros(a) * averageRowNonZeros(b), Integer.MAX_VALUE,
+                    (from, to) -> blocks[from] = a.multiplyRows(b, from, to));
+            submitAll(type.name(), tasks);
+            resolveSparse(node, SparseMatrix.stack(Arrays.stream(blocks).filter(block -> block != null)
+                    .toArray(SparseMatrix[]::new), b.columnCount()));
+        } else {
+            final boolean sparseLeft = left.isSparse();
+            final SparseMatrix sparse = sparseLeft ? left.getSparseMatrix() : right.getSparseMatrix();
+            final double[][] dense = sparseLeft ? right.getMatrix() : left.getMatrix();
+            if (dense.length == 0) {
+                throw new IllegalStateException("Matrices must not be empty for multiplication.");
+            }
+            if (sparseLeft ? sparse.columnCount() != dense.length : dense[0].length != sparse.rowCount()) {
+                throw new IllegalArgumentException("Incompatible matrix dimensions for multiplication.");
+            }
+            int rows = sparseLeft ? sparse.rowCount() : dense.length;
+            final double[][] out = new double[rows][sparseLeft ? dense[0].length : sparse.columnCount()];
+            long unitsPerRow = sparseLeft ? averageRowNonZeros(sparse) * dense[0].length : sparse.nonZeros();
+            tasks = rowTasks(type, rows, unitsPerRow, Integer.MAX_VALUE, sparseLeft
+                    ? (from, to) -> sparse.multiplyDenseRows(dense, from, to, out)
+                    : (from, to) -> sparse.multiplyByDenseRows(dense, from, to, out));
+            submitAll(type.name(), tasks);
+            node.resolve(out);
+        }
+    }
+
+    // TILED layout: every operation runs as one task per tile of its result, whatever the shape.
+    // Operand tiles are read under their own locks and every result tile is written by one task.
+    // NEGATE and ADD update the left operand in place, its node is consumed by this step.
+    private void computeTiled(ComputationNode node) {
+        ComputationNodeType type = node.getNodeType();
+        final TiledMatrix result;
+        List<Runnable> tasks = new ArrayList<>();
+        if (type == ComputationNodeType.NEGATE || type == ComputationNodeType.TRANSPOSE) {
+            checkUnaryOperand(node);
+            final TiledMatrix operand = tiledOperand(node.getChildren().get(0));
+            if (type == ComputationNodeType.NEGATE) {
+                result = operand;
+                forEachTile(operand, (ti, tj) -> tasks.add(() -> operand.negateTile(ti, tj)));
+            } else {
+                result = new TiledMatrix(operand.columnCount(), operand.rowCount(), operand.tileSize());
+                forEachTile(operand, (ti, tj) -> tasks.add(() -> operand.transposeTileInto(result, ti, tj)));
+            }
+        } else {
+            checkBinaryOperand(node);
+            final TiledMatrix left = tiledOperand(node.getChildren().get(0));
+            final TiledMatrix right = tiledOperand(node.getChildren().get(1));
+            if (type == ComputationNodeType.ADD) {
+                if (left.rowCount() != right.rowCount() || left.columnCount() != right.columnCount()) {
+                    throw new IllegalArgumentException("Incompatible matrix dimensions for addition.");
+                }
+                result = left;
+                forEachTile(left, (ti, tj) -> tasks.add(() -> left.addTile(right, ti, tj)));
+            } else {
+                if (left.columnCount() != right.rowCount()) {
+                    throw new IllegalArgumentException("Incompatible matrix dimensions for multiplication.");
+                }
+                result = new TiledMatrix(left.rowCount(), right.columnCount(), config.getTileSize());
+                forEachTile(result, (ti, tj) -> tasks.add(() -> result.multiplyTile(left, right, ti, tj)));
+            }
+        }
+        submitAll(type.name(), tasks);
+        node.resolve(result);
+    }
+
+    private TiledMatrix tiledOperand(ComputationNode operand) {
+        if (operand.isTiled()) {
+            return operand.getTiledMatrix();
+        }
+        return TiledMatrix.fromRowMajor(operand.getMatrix(), config.getTileSize());
+    }
+
+    private static void forEachTile(TiledMatrix matrix, BiConsumer<Integer, Integer> action) {
+        for (int ti = 0; ti < matrix.tileRows(); ti++) {
+            for (int tj = 0; tj < matrix.tileCols(); tj++) {
+                action.accept(ti, tj);
+            }
+        }
+    }
+
+    // keeps a sparse result sparse unless fill-in made the dense form cheaper
+    private void resolveSparse(ComputationNode node, SparseMatrix result) {
+        if (result.density() > Math.max(SparseMatrix.FILL_IN_LIMIT, config.getSparseThreshold())) {
+            node.resolve(result.toDense());
+        } else {
+            node.resolve(result);
+        }
+    }
+
+    private static long averageRowNonZeros(SparseMatrix matrix) {
+        return Math.max(1, matrix.nonZeros() / Math.max(1, matrix.rowCount()));
+    }
+
+    // Splits rows [0, rows) into tasks of unitsPerRow units of work per row, sized by the chunk sizer
+    // and measured so that the next batch of the same operation is sized from its actual cost.
+    private List<Runnable> rowTasks(ComputationNodeType type, int rows, long unitsPerRow, int maxRows, RowRange body) {
+        int rowsPerTask = chunkSizer.rowsPerTask(type, rows, unitsPerRow, maxRows);
+        List<Runnable> tasks = new ArrayList<>((rows + rowsPerTask - 1) / rowsPerTask);
+        for (int start = 0; start < rows; start += rowsPerTask) {
+            final int from = start;
+            final int to = Math.min(rows, start + rowsPerTask);
+            tasks.add(chunkSizer.measured(type, (long) (to - from) * unitsPerRow, () -> body.run(from, to)));
+        }
+        return tasks;
+    }
+
+    // Like rowTasks, for bodies split into a private compute and a commit, whose tasks the executor
+    // may duplicate to get past a slow worker when speculation is on.
+    private <R> List<Runnable> rowTasks(ComputationNodeType type, int rows, long unitsPerRow, int maxRows,
+            RowCompute<R> compute, RowCommit<R> commit) {
+        if (!speculative) {
+            return rowTasks(type, rows, unitsPerRow, maxRows,
+                    (from, to) -> commit.commit(from, to, compute.compute(from, to)));
+        }
+        int rowsPerTask = chunkSizer.rowsPerTask(type, rows, unitsPerRow, maxRows);
+        List<Runnable> tasks = new ArrayList<>((rows + rowsPerTask - 1) / rowsPerTask);
+        for (int start = 0; start < rows; start += rowsPerTask) {
+            final int from = start;
+            final int to = Math.min(rows, start + rowsPerTask);
+            tasks.add(chunkSizer.measured(type, (long) (to - from) * unitsPerRow,
+                    () -> compute.compute(from, to), result -> commit.commit(from, to, result)));
+        }
+        return tasks;
+    }
+
+    public void loadAndCompute(ComputationNode node) {
+        List<Runnable> tasks;
+        switch (node.getNodeType()) {
+            case ADD:
+                loadBinaryOperand(node);
+                tasks = createAddTasks();
+                break;
+            case MULTIPLY:
+                loadBinaryOperand(node);
+                if (useStrassen()) {
+                    computeStrassen();
+                    return;
+                }
+                if (spillsResults()) {
+                    computeStreamingMultiply();
+                    return;
+                }
+                tasks = createMultiplyTasks();
+                break;
+            case NEGATE:
+                loadUnaryOperand(node);
+                tasks = createNegateTasks();
+                break;
+            case TRANSPOSE:
+                // flips the orientation of the loaded vectors, nothing to run in parallel
+                loadUnaryOperand(node);
+                leftMatrix.transpose();
+                return;
+            default:
+                throw new IllegalArgumentException("Unsupported operation: " + node.getNodeType());
+        }
+
+        submitComputePhase(node.getNodeType(), tasks);
+    }
+
+    // Every task owns a disjoint set of rows of the left matrix and only reads the right one,
+    // so the kernels run without per-vector locks for the duration of the batch.
+    private void submitComputePhase(ComputationNodeType type, List<Runnable> tasks) {
+        leftMatrix.enterPhase(AccessPhase.PARTITIONED);
+        rightMatrix.enterPhase(AccessPhase.FROZEN);
+        try {
+            submitAll(type.name(), tasks);
+        } finally {
+            rightMatrix.enterPhase(AccessPhase.SHARED);
+            leftMatrix.enterPhase(AccessPhase.SHARED);
+        }
+    }
+
+    public List<Runnable> createAddTasks() {
+        if (leftMatrix == null || rightMatrix == null) {
+            throw new IllegalStateException("Both left and right matrices must be loaded before addition.");
+        }
+        if (leftMatrix.length() == 0 || rightMatrix.length() == 0) {
+            throw new IllegalStateException("Matrices must not be empty for addition.");
+        }
+        if (leftMatrix.rowCount() != rightMatrix.rowCount() || leftMatrix.columnCount() != rightMatrix.columnCount()) {
+            throw new IllegalArgumentException("Incompatible matrix dimensions for addition.");
+        }
+        // vectors are added pairwise, so both operands must be stored the same way
+        rightMatrix.relayout(leftMatrix.getOrientation());
+        return rowTasks(ComputationNodeType.ADD, leftMatrix.length(), leftMatrix.get(0).length(), Integer.MAX_VALUE,
+                (from, to) -> {
+                    for (int i = from; i < to; i++) {
+                        SharedVector leftRow = leftMatrix.get(i);
+                        SharedVector rightRow = rightMatrix.get(i);
+                        leftRow.add(rightRow);
+                    }
+                });
+    }
+
+    public List<Runnable> createMultiplyTasks() {
+        checkMultiplyOperands();
+        // product rows are written back in place of the left rows
+        leftMatrix.relayout(VectorOrientation.ROW_MAJOR);
+        if (config.getPrecision() == Precision.SINGLE) {
+            return createSingleMultiplyTasks();
+        }
+        // MIXED operands are widened into double buffers, so the products accumulate in float64
+        final int inner = rightMatrix.rowCount();
+        final int cols = rightMatrix.columnCount();
+        // pack the right operand once; every task reads this private copy without locking.
+        // A column-major operand (e.g. a transpose view) is packed as stored and consumed as such.
+        final boolean transposedRight = (rightMatrix.getOrientation() == VectorOrientation.COLUMN_MAJOR);
+        final double[] packedRight = transposedRight ? rightMatrix.packColumnMajor() : rightMatrix.packRowMajor();
+        final SharedMatrix target = leftMatrix;
+        // A losing attempt may still be computing after its batch is done, when the matrix has left the
+        // compute phase or been unloaded. With speculation, compute() therefore copies its rows from a
+        // private snapshot, which takes no locks; only the winner's commit touches the matrix.
+        final double[] snapshot = speculative ? target.packRowMajor() : null;
+        // at most ROW_BLOCK rows per task, which bounds the per-thread scratch buffers
+        return rowTasks(ComputationNodeType.MULTIPLY, target.length(), (long) inner * cols, GemmKernel.ROW_BLOCK,
+                (from, to) -> {
+                    int count = to - from;
+                    double[] left = ScratchBuffers.doubles(ScratchBuffers.OPERAND, count * inner);
+                    if (snapshot != null) {
+                        System.arraycopy(snapshot, from * inner, left, 0, count * inner);
+                    } else {
+                        target.readRows(from, to, left);
+                    }
+                    double[] result = ScratchBuffers.doubles(ScratchBuffers.PRODUCT, count * cols);
+                    Arrays.fill(result, 0, count * cols, 0.0);
+                    if (transposedRight) {
+                        GemmKernel.multiplyTransposed(left, packedRight, result, count, inner, cols);
+                    } else {
+                        GemmKernel.multiply(left, packedRight, result, count, inner, cols);
+                    }
+                    return result;
+                },
+                (from, to, result) -> target.writeRows(from, to, result, cols));
+    }
+
+    private void checkMultiplyOperands() {
+        if (leftMatrix == null || rightMatrix == null) {
+            throw new IllegalStateException("Both left and right matrices must be loaded before multiplication.");
+        }
+        if (leftMatrix.length() == 0 || rightMatrix.length() == 0) {
+            throw new IllegalStateException("Matrices must not be empty for multiplication.");
+        }
+        if (leftMatrix.columnCount() != rightMatrix.rowCount()) {
+            throw new IllegalArgumentException("Incompatible matrix dimensions for multiplication.");
+        }
+    }
+
+    // Out-of-core multiplication: the right operand is never packed on the heap. Every task streams it
+    // through panels of KC rows, and writes its rows of the product into a fresh matrix, since rows of
+    // a different width cannot be written back in place into the mapped tiles of the left operand.
+    private void computeStreamingMultiply() {
+        checkMultiplyOperands();
+        final int inner = rightMatrix.rowCount();
+        final int cols = rightMatrix.columnCount();
+        final int rows = leftMatrix.rowCount();
+        final SharedMatrix product = newOperandMatrix();
+        product.loadEmpty(rows, cols);
+        List<Runnable> tasks = rowTasks(ComputationNodeType.MULTIPLY, rows, (long) inner * cols, GemmKernel.ROW_BLOCK,
+                (from, to) -> {
+                    int count = to - from;
+                    double[] left = ScratchBuffers.doubles(ScratchBuffers.OPERAND, count * inner);
+                    leftMatrix.readRows(from, to, left);
+                    double[] result = ScratchBuffers.doubles(ScratchBuffers.PRODUCT, count * cols);
+                    Arrays.fill(result, 0, count * cols, 0.0);
+                    for (int kk = 0; kk < inner; kk += GemmKernel.KC) {
+                        int depth = Math.min(GemmKernel.KC, inner - kk);
+                        double[] panel = ScratchBuffers.doubles(ScratchBuffers.PANEL, depth * cols);
+                        rightMatrix.readRows(kk, kk + depth, panel);
+                        GemmKernel.multiply(left, kk, inner, panel, 0, cols, result, 0, cols, count, depth, cols);
+                    }
+                    product.writeRows(from, to, result, cols);
+                });
+        product.enterPhase(AccessPhase.PARTITIONED);
+        try {
+            submitComputePhase(ComputationNodeType.MULTIPLY, tasks);
+        } finally {
+            product.enterPhase(AccessPhase.SHARED);
+        }
+        leftMatrix.unload();
+        leftMatrix = product;
+    }
+
+    // float32 version of the blocked multiplication: half the bytes per operand, twice the SIMD lanes
+    private List<Runnable> createSingleMultiplyTasks() {
+        final int inner = rightMatrix.rowCount();
+        final int cols = rightMatrix.columnCount();
+        final float[] packedRight = rightMatrix.packRowMajorFloats();
+        final SharedMatrix target = leftMatrix;
+        final float[] snapshot = speculative ? target.packRowMajorFloats() : null; // see createMultiplyTasks
+        return rowTasks(ComputationNodeType.MULTIPLY, target.length(), (long) inner * cols, GemmKernel.ROW_BLOCK,
+                (from, to) -> {
+                    int count = to - from;
+                    float[] left = ScratchBuffers.floats(ScratchBuffers.OPERAND, count * inner);
+                    if (snapshot != null) {
+                        System.arraycopy(snapshot, from * inner, left, 0, count * inner);
+                    } else {
+                        target.readRows(from, to, left);
+                    }
+                    float[] result = ScratchBuffers.floats(ScratchBuffers.PRODUCT, count * cols);
+                    Arrays.fill(result, 0, count * cols, 0.0f);
+                    GemmKernel.multiply(left, packedRight, result, count, inner, cols);
+                    return result;
+                },
+                (from, to, result) -> target.writeRows(from, to, result, cols));
+    }
+
+    // Strassen is opt-in and only pays off for large square operands. It packs both operands and
+    // all sub-products on the heap, so arena-backed layouts, which may not fit there, never use it.
+    private boolean useStrassen() {
+        int threshold = config.getStrassenThreshold();
+        int n = leftMatrix.rowCount();
+        return threshold > 0 && arena == null && n >= threshold && leftMatrix.columnCount() == n
+                && rightMatrix.rowCount() == n && rightMatrix.columnCount() == n;
+    }
+
+    // The seven Strassen sub-products of the top level run as independent tasks, each recursing
+    // down to the blocked kernel. A second batch assembles the product rows into the left matrix.
+    private void computeStrassen() {
+        leftMatrix.relayout(VectorOrientation.ROW_MAJOR);
+        final int n = leftMatrix.rowCount();
+        final int h = StrassenKernel.half(n);
+        final double[][] operands = StrassenKernel.operands(leftMatrix.packRowMajor(), rightMatrix.packRowMajor(), n);
+        final double[][] products = new double[7][];
+        List<Runnable> productTasks = new ArrayList<>(7);
+        for (int k = 0; k < 7; k++) {
+            final int index = k;
+            productTasks.add(() -> products[index] = strassenProduct(operands[2 * index], operands[2 * index + 1], h));
+        }
+        submitAll(ComputationNodeType.MULTIPLY.name(), productTasks);
+
+        // combining is element-wise work, about four additions per element
+        List<Runnable> combineTasks = rowTasks(ComputationNodeType.ADD, n, 4L * n, GemmKernel.ROW_BLOCK,
+                (from, to) -> {
+                    double[] rows = ScratchBuffers.doubles(ScratchBuffers.PRODUCT, (to - from) * n);
+                    StrassenKernel.combineRows(products, n, from, to, rows);
+                    leftMatrix.writeRows(from, to, rows, n);
+                });
+        submitComputePhase(ComputationNodeType.MULTIPLY, combineTasks);
+    }
+
+    // One Strassen product, run on a worker. Above the cutoff its own seven products are forked as
+    // subtasks, which the waiting worker helps to run, so the whole recursion tree shares the workers.
+    private double[] strassenProduct(double[] a, double[] b, int n) {
+        if (n <= StrassenKernel.DEFAULT_CUTOFF) {
+            return StrassenKernel.multiply(a, b, n, StrassenKernel.DEFAULT_CUTOFF);
+        }
+        final int h = StrassenKernel.half(n);
+        final double[][] operands = StrassenKernel.operands(a, b, n);
+        final double[][] products = new double[7][];
+        List<Runnable> productTasks = new ArrayList<>(7);
+        for (int k = 0; k < 7; k++) {
+            final int index = k;
+            productTasks.add(() -> products[index] = strassenProduct(operands[2 * index], operands[2 * index + 1], h));
+        }
+        submitAll(ComputationNodeType.MULTIPLY.name(), productTasks);
+        double[] c = new double[n * n];
+        StrassenKernel.combineRows(products, n, 0, n, c);
+        return c;
+    }
+
+    public List<Runnable> createNegateTasks() {
+        if (leftMatrix == null) {
+            throw new IllegalStateException("Left matrix must be loaded before negation.");
+        }
+        if (leftMatrix.length() == 0) {
+            throw new IllegalStateException("Matrix must not be empty for negation.");
+        }
+        return rowTasks(ComputationNodeType.NEGATE, leftMatrix.length(), leftMatrix.get(0).length(), Integer.MAX_VALUE,
+                (from, to) -> {
+                    for (int i = from; i < to; i++) {
+                        SharedVector row = leftMatrix.get(i);
+                        row.negate();
+                    }
+                });
+    }
+
+    public List<Runnable> createTransposeTasks() {
+        if (leftMatrix == null) {
+            throw new IllegalStateException("Left matrix must be loaded before transposition.");
+        }
+        if (leftMatrix.length() == 0) {
+            throw new IllegalStateException("Matrix must not be empty for transposition.");
+        }
+        // flipping a vector costs the same whatever its length
+        return rowTasks(ComputationNodeType.TRANSPOSE, leftMatrix.length(), 1, Integer.MAX_VALUE,
+                (from, to) -> {
+                    for (int i = from; i < to; i++) {
+                        SharedVector row = leftMatrix.get(i);
+                        row.transpose();
+                    }
+                });
+    }
+}
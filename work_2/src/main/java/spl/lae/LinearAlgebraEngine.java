@@ -4,196 +4,130 @@ import parser.*;
 import memory.*;
 import scheduling.*;
 
-import java.util.LinkedList;
-import java.util.List;
-
-public class LinearAlgebraEngine {
-
-    private SharedMatrix leftMatrix = new SharedMatrix();
-    private SharedMatrix rightMatrix = new SharedMatrix();
-    private TiredExecutor executor;
+/**
+ * Resolves computation trees on a pool of workers that lives as long as the engine.
+ * An engine serves any number of run calls, one after the other or at once from different threads,
+ * so later trees find the workers started, the JIT warmed up and the buffer pool filled.
+ * close() waits for the runs in progress and then stops the workers and frees the arena.
+ */
+public class LinearAlgebraEngine implements AutoCloseable {
+
+    private TaskExecutor executor;
+    private final int numThreads;
+    private final EngineConfig config;
+    private final BufferArena arena; // owns the memory of OFF_HEAP and MAPPED matrices, null otherwise
+    private final BufferPool pool = new BufferPool(); // recycles the arrays of dead intermediates across runs, within a byte budget
+    private final ChunkSizer chunkSizer; // rows per task, tuned by the measured task times
+    private int activeRuns = 0; // guarded by this
+    private boolean closed = false; // guarded by this
 
     public LinearAlgebraEngine(int numThreads) {
-        // TODO: create executor with given thread count
-        this.executor = new TiredExecutor(numThreads);
-    }
-
-    public ComputationNode run(ComputationNode computationRoot) {
-        // TODO: resolve computation tree step by step until final matrix is produced
-        // Iteratively locate the next resolvable node: a node whose operands are
-        // already concrete matrices.
-        try {
-            while (true) {
-                if (computationRoot.getNodeType() == ComputationNodeType.MATRIX) {
-                    return computationRoot;
-                }
-                ComputationNode resolvable = computationRoot.findResolvable();
-                if (resolvable == null) {
-                    // throw error - no resolvable node found
-                    throw new IllegalArgumentException("No resolvable node found in computation tree.");
-                }
-                loadAndCompute(resolvable);
-                // read the result from the left shared matrix (M1) and attach it back to the
-                // corresponding node in the computation tree.
-                double[][] resultMatrix = leftMatrix.readRowMajor();
-                resolvable.resolve(resultMatrix);
-            }
-        } finally {
-            this.executor.shutdown();
-        }
+        this(numThreads, new EngineConfig());
     }
 
-    private void loadUnaryOperand(ComputationNode node) {
-        // Precondition: node must be a unary operation
-        if (node.getNodeType() != ComputationNodeType.NEGATE && node.getNodeType() != ComputationNodeType.TRANSPOSE) {
-            throw new IllegalArgumentException("Node must be a unary operation (NEGATE or TRANSPOSE).");
+    public LinearAlgebraEngine(int numThreads, EngineConfig config) {
+        StorageLayout layout = config.getStorageLayout();
+        boolean buffered = (layout == StorageLayout.OFF_HEAP || layout == StorageLayout.MAPPED);
+        if ((buffered || layout == StorageLayout.TILED) && config.getPrecision() != Precision.DOUBLE) {
+            throw new IllegalArgumentException(layout + " storage only supports double precision.");
         }
-        List<ComputationNode> children = node.getChildren();
-        if (children.size() != 1) {
-            throw new IllegalArgumentException("Node must have exactly one child.");
+        // the arena is created first: a bad spill directory must fail before any worker starts
+        if (layout == StorageLayout.MAPPED) {
+            this.arena = (config.getSpillDirectory() == null) ? new MappedArena()
+                    : new MappedArena(config.getSpillDirectory());
+        } else {
+            this.arena = (layout == StorageLayout.OFF_HEAP) ? new OffHeapArena() : null;
         }
-        ComputationNode left = children.get(0);
-        if (left.getNodeType() != ComputationNodeType.MATRIX) {
-            throw new IllegalArgumentException("Child must be a MATRIX node.");
-        }
-        leftMatrix.loadRowMajor(left.getMatrix());
+        this.config = config;
+        // TODO: create executor with given thread count
+        this.executor = (config.getExecutorBackend() == ExecutorBackend.VIRTUAL) ? new VirtualThreadExecutor(numThreads)
+                : new TiredExecutor(numThreads, config.getSchedulingMode(), speculates(), config.getHandoffMode());
+        this.numThreads = numThreads;
+        this.chunkSizer = new ChunkSizer(numThreads);
     }
 
-    private void loadBinaryOperand(ComputationNode node) {
-        // Precondition: node must be a binary operation
-        if (node.getNodeType() != ComputationNodeType.ADD && node.getNodeType() != ComputationNodeType.MULTIPLY) {
-            throw new IllegalArgumentException("Node must be a binary operation (ADD or MULTIPLY).");
-        }
-        List<ComputationNode> children = node.getChildren();
-        if (children.size() != 2) {
-            throw new IllegalArgumentException("Node must have exactly two children.");
-        }
-        ComputationNode left = children.get(0);
-        ComputationNode right = children.get(1);
-        if (left.getNodeType() != ComputationNodeType.MATRIX || right.getNodeType() != ComputationNodeType.MATRIX) {
-            throw new IllegalArgumentException("Both children must be MATRIX nodes.");
-        }
-        leftMatrix.loadRowMajor(left.getMatrix());
-        rightMatrix.loadRowMajor(right.getMatrix());
+    // A losing attempt may still read its operands after they have been unloaded, which is only
+    // harmless on the heap: buffers of an arena are freed on release. Only TiredExecutor speculates.
+    private boolean speculates() {
+        return config.isSpeculative() && arena == null && config.getExecutorBackend() == ExecutorBackend.TIRED;
     }
 
-    public void loadAndCompute(ComputationNode node) {
-        // TODO: load operand matrices
-        List<Runnable> tasks;
-        switch (node.getNodeType()) {
-            case ADD:
-                loadBinaryOperand(node);
-                tasks = createAddTasks();
-                break;
-            case MULTIPLY:
-                loadBinaryOperand(node);
-                tasks = createMultiplyTasks();
-                break;
-            case NEGATE:
-                loadUnaryOperand(node);
-                tasks = createNegateTasks();
-                break;
-            case TRANSPOSE:
-                loadUnaryOperand(node);
-                tasks = createTransposeTasks();
-                break;
-            default:
-                throw new IllegalArgumentException("Unsupported operation: " + node.getNodeType());
-        }
-
-        // TODO: create compute tasks & submit tasks to executor
-
-        executor.submitAll(tasks);
+    /**
+     * Resolves the tree down to its result matrix. Safe to call from several threads at once:
+     * every call keeps its operands to itself and only shares the workers.
+     */
+    public ComputationNode run(ComputationNode computationRoot) {
+        return run(computationRoot, Job.DEFAULT);
     }
 
-    public List<Runnable> createAddTasks() {
-        // TODO: return tasks that perform row-wise addition
-        // Nir:
-        if (leftMatrix == null || rightMatrix == null) {
-            throw new IllegalStateException("Both left and right matrices must be loaded before addition.");
-        }
-        if (leftMatrix.length() == 0 || rightMatrix.length() == 0) {
-            throw new IllegalStateException("Matrices must not be empty for addition.");
-        }
-        if (leftMatrix.length() != rightMatrix.length() || leftMatrix.get(0).length() != rightMatrix.get(0).length()) {
-            throw new IllegalArgumentException("Incompatible matrix dimensions for addition.");
+    /**
+     * Like run(computationRoot), with the tasks of the run scheduled and accounted for as the
+     * given job, so that a large tree of one job does not hold up the small trees of others.
+     */
+    public ComputationNode run(ComputationNode computationRoot, Job job) {
+        if (job == null) {
+            throw new IllegalArgumentException("Job cannot be null.");
+        }
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Engine is closed.");
+            }
+            activeRuns++;
         }
-        List<Runnable> tasks = new LinkedList<>();
-        for (int i = 0; i < leftMatrix.length(); i++) {
-            final int rowIndex = i;
-            tasks.add(() -> {
-                SharedVector leftRow = leftMatrix.get(rowIndex);
-                SharedVector rightRow = rightMatrix.get(rowIndex);
-                leftRow.add(rightRow);
-            });
+        try {
+            return new EngineRun(executor, config, arena, pool, chunkSizer, speculates(), job)
+                    .run(computationRoot);
+        } finally {
+            synchronized (this) {
+                activeRuns--;
+                notifyAll();
+            }
         }
-        return tasks;
     }
 
-    public List<Runnable> createMultiplyTasks() {
-        // TODO: return tasks that perform row × matrix multiplication
-        // Nir:
-        if (leftMatrix == null || rightMatrix == null) {
-            throw new IllegalStateException("Both left and right matrices must be loaded before multiplication.");
-        }
-        if (leftMatrix.length() == 0 || rightMatrix.length() == 0) {
-            throw new IllegalStateException("Matrices must not be empty for multiplication.");
-        }
-        if (leftMatrix.get(0).length() != rightMatrix.length()) {
-            throw new IllegalArgumentException("Incompatible matrix dimensions for multiplication.");
+    /**
+     * Refuses new runs, waits for the ones in progress, then shuts the workers down and releases
+     * the pooled buffers and the arena. Calling it again does nothing.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            boolean interrupted = false;
+            while (activeRuns > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true; // the runs still have to finish before the workers go
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
         }
-        List<Runnable> tasks = new LinkedList<>();
-        for (int i = 0; i < leftMatrix.length(); i++) {
-            final int rowIndex = i;
-            tasks.add(() -> {
-                SharedVector leftRow = leftMatrix.get(rowIndex);
-                leftRow.vecMatMul(rightMatrix);
-            });
+        executor.shutdown();
+        pool.clear();
+        if (arena != null) {
+            arena.close();
         }
-        return tasks;
     }
 
-    public List<Runnable> createNegateTasks() {
-        // TODO: return tasks that negate rows
-        // Add exception handling as needed
-        if (leftMatrix == null) {
-            throw new IllegalStateException("Left matrix must be loaded before negation.");
-        }
-        if (leftMatrix.length() == 0) {
-            throw new IllegalStateException("Matrix must not be empty for negation.");
-        }
-        List<Runnable> tasks = new LinkedList<>();
-        for (int i = 0; i < leftMatrix.length(); i++) {
-            final int rowIndex = i;
-            tasks.add(() -> {
-                SharedVector row = leftMatrix.get(rowIndex);
-                row.negate();
-            });
-        }
-        return tasks;
+    public String getWorkerReport() {
+        // Nir:
+        return executor.getWorkerReport();
     }
 
-    public List<Runnable> createTransposeTasks() {
-        // TODO: return tasks that transpose rows
-        if (leftMatrix == null) {
-            throw new IllegalStateException("Left matrix must be loaded before transposition.");
-        }
-        if (leftMatrix.length() == 0) {
-            throw new IllegalStateException("Matrix must not be empty for transposition.");
-        }
-        List<Runnable> tasks = new LinkedList<>();
-        for (int i = 0; i < leftMatrix.length(); i++) {
-            final int rowIndex = i;
-            tasks.add(() -> {
-                SharedVector row = leftMatrix.get(rowIndex);
-                row.transpose();
-            });
-        }
-        return tasks;
+    public String getMetricsJson() {
+        return executor.getMetricsJson();
     }
 
-    public String getWorkerReport() {
-        // Nir:
-        return executor.getWorkerReport();
+    /**
+     * Tasks of the job that the workers of this engine have finished so far.
+     */
+    public long getTasksRun(Job job) {
+        return executor.getTasksRun(job);
     }
 }
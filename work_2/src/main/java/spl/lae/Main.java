@@ -1,6 +1,8 @@
 package spl.lae;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
 import parser.*;
 
 /**
@@ -14,7 +16,7 @@ import parser.*;
  * <h3>Usage:</h3>
  * 
  * <pre>
- * java spl.lae.Main &lt;threads&gt; &lt;input.json&gt; &lt;output.json&gt;
+ * java spl.lae.Main &lt;threads&gt; &lt;input.json&gt; &lt;output.json&gt; [--option=value ...]
  * </pre>
  * 
  * <h3>Parameters:</h3>
@@ -27,12 +29,51 @@ import parser.*;
  * format)</li>
  * </ul>
  * 
+ * <h3>Options:</h3>
+ * <ul>
+ * <li><strong>--storage=contiguous|per-vector|off-heap|mapped|tiled</strong> - Memory layout of
+ * the operand matrices; mapped keeps them and all intermediate results in memory-mapped
+ * temp files, tiled splits them into square blocks processed one task per block (default: contiguous)</li>
+ * <li><strong>--tile=&lt;n&gt;</strong> - Side of the blocks of the tiled layout (default: 64)</li>
+ * <li><strong>--spill-dir=&lt;path&gt;</strong> - Directory of the temp files of the
+ * mapped layout (default: java.io.tmpdir)</li>
+ * <li><strong>--precision=double|single|mixed</strong> - Element format of the
+ * operand matrices; mixed stores float32 and accumulates products in float64
+ * (default: double)</li>
+ * <li><strong>--strassen=&lt;n&gt;|off</strong> - Multiply square operands of size
+ * n and above with Strassen's algorithm; ignored by the off-heap and mapped layouts
+ * (default: off)</li>
+ * <li><strong>--sparse=&lt;density&gt;|off</strong> - Keep input matrices with at most
+ * this fraction of non-zeros in sparse (CSR) form, e.g. 0.05 (default: off)</li>
+ * <li><strong>--scheduler=fatigue|work-stealing|proportional</strong> - How tasks reach the
+ * workers: one at a time to the least tired idle worker, whole batches split into per-worker deques
+ * that idle workers steal from, or whole batches split by estimated cost in proportion to each
+ * worker's measured throughput (default: fatigue)</li>
+ * <li><strong>--handoff=blocking|spinning</strong> - How idle workers wait for tasks: blocked
+ * in a queue, or spinning for a few microseconds before parking, which hands short tasks over
+ * faster at the cost of busy idle cores (default: blocking)</li>
+ * <li><strong>--executor=tired|virtual</strong> - Run the tasks on the pool of TiredThreads, or
+ * on a virtual thread each with at most &lt;threads&gt; running at once; --scheduler,
+ * --handoff and --speculate only apply to the former (default: tired)</li>
+ * <li><strong>--speculate=on|off</strong> - Near the end of a multiplication step, run a
+ * duplicate of any row task that is much slower than the others on an idle worker and keep
+ * whichever finishes first; heap storage layouts only (default: off)</li>
+ * <li><strong>--metrics=&lt;path&gt;</strong> - Also write the latency histograms of the run
+ * (service time and queue wait per worker and per operation, batch makespan per operation,
+ * with p50/p99/p999) to this JSON file</li>
+ * </ul>
+ * 
  * <h3>Example:</h3>
  * 
  * <pre>
  * java spl.lae.Main 4 examples/example1.json out.json
  * </pre>
  * 
+ * <p>
+ * Running with <code>java --add-modules jdk.incubator.vector ...</code> enables
+ * the SIMD kernels; without it the engine falls back to scalar loops.
+ * </p>
+ * 
  * <h3>Supported Matrix Operations:</h3>
  * <ul>
  * <li><code>+</code> Addition</li>
@@ -63,27 +104,32 @@ public class Main {
    * <li>Writes the result matrix to output JSON</li>
    * </ol>
    * 
-   * @param args [threads, input_path, output_path]
+   * @param args [threads, input_path, output_path, options...]
    * @throws IOException              if file I/O operations fail
    * @throws IllegalArgumentException if argument count is invalid
    * @throws NumberFormatException    if thread count is not a valid integer
    */
   public static void main(String[] args) throws IOException {
-    if (args.length != 3) {
+    if (args.length < 3) {
       throw new IllegalArgumentException(
-          "Expected 3 arguments: <number_of_threads> <path/to/input/file> <path/to/output/file>");
+          "Expected at least 3 arguments: <number_of_threads> <path/to/input/file> <path/to/output/file> [--option=value ...]");
     }
     int numberOfThreads = Integer.parseInt(args[0]);
     String inputPath = args[1];
     String outputPath = args[2];
-    InputParser parser = new InputParser();
     try {
+      EngineConfig config = EngineConfig.parse(Arrays.copyOfRange(args, 3, args.length));
+      InputParser parser = new InputParser(config.getSparseThreshold());
       ComputationNode root = parser.parse(inputPath);
       root.associativeNesting();
-      LinearAlgebraEngine engine = new LinearAlgebraEngine(numberOfThreads);
-      ComputationNode result = engine.run(root);
-      double[][] resultMatrix = result.getMatrix();
-      OutputWriter.write(resultMatrix, outputPath);
+      try (LinearAlgebraEngine engine = new LinearAlgebraEngine(numberOfThreads, config)) {
+        ComputationNode result = engine.run(root);
+        double[][] resultMatrix = result.getMatrix();
+        OutputWriter.write(resultMatrix, outputPath);
+        if (config.getMetricsFile() != null) {
+          Files.writeString(config.getMetricsFile(), engine.getMetricsJson());
+        }
+      }
     } catch (Exception e) {
       OutputWriter.write(e.getMessage(), outputPath);
     }
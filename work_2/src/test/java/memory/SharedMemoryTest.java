@@ -1,6 +1,13 @@
 package memory;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
@@ -168,6 +175,63 @@ class SharedMemoryTest {
         assertEquals((double)threads, v.get(0), 0.0001);
     }
     
+    @Test
+    void testOptimisticDotNeverSeesHalfNegatedVector() throws InterruptedException {
+        int len = 4096;
+        double[] ones = new double[len];
+        java.util.Arrays.fill(ones, 1.0);
+        SharedVector v = new SharedVector(ones, VectorOrientation.ROW_MAJOR);
+        SharedVector probe = new SharedVector(ones, VectorOrientation.ROW_MAJOR);
+        AtomicBoolean done = new AtomicBoolean(false);
+        Thread writer = new Thread(() -> {
+            while (!done.get()) {
+                v.negate();
+            }
+        });
+        writer.start();
+        try {
+            for (int i = 0; i < 2000; i++) {
+                double dot = v.dot(probe);
+                assertTrue(dot == len || dot == -len, "torn read: " + dot);
+            }
+        } finally {
+            done.set(true);
+            writer.join();
+        }
+    }
+
+    @Test
+    void testSelfOperationsDoNotDeadlock() {
+        SharedVector v = new SharedVector(new double[]{1.0, 2.0}, VectorOrientation.ROW_MAJOR);
+        v.add(v);
+        assertEquals(20.0, v.dot(v), 1e-12);
+
+        SharedMatrix m = new SharedMatrix(new double[][]{{1, 0}, {0, 1}});
+        SharedVector row = m.get(0);
+        row.vecMatMul(m);
+        assertEquals(1.0, row.get(0), 1e-12);
+    }
+
+    @Test
+    void testComputePhaseSkipsLocksAndFreezesReads() {
+        SharedMatrix left = new SharedMatrix(new double[][]{{1, 2}, {3, 4}});
+        SharedMatrix right = new SharedMatrix(new double[][]{{10, 20}, {30, 40}});
+        left.enterPhase(AccessPhase.PARTITIONED);
+        right.enterPhase(AccessPhase.FROZEN);
+
+        left.get(0).add(right.get(0));
+        left.get(1).negate();
+        assertEquals(AccessPhase.FROZEN, right.get(1).getPhase());
+        assertThrows(IllegalStateException.class, () -> right.get(1).negate());
+        assertThrows(IllegalStateException.class, () -> right.loadRowMajor(new double[][]{{1}}));
+
+        right.enterPhase(AccessPhase.SHARED);
+        left.enterPhase(AccessPhase.SHARED);
+        right.get(1).negate();
+        assertArrayEquals(new double[][]{{11, 22}, {-3, -4}}, left.readRowMajor());
+        assertArrayEquals(new double[][]{{10, 20}, {-30, -40}}, right.readRowMajor());
+    }
+
     @Test
     void testSharedVectorGetOutOfBounds() {
         SharedVector v = new SharedVector(new double[]{1.0}, VectorOrientation.ROW_MAJOR);
@@ -444,4 +508,688 @@ class SharedMemoryTest {
         assertThrows(IndexOutOfBoundsException.class, () -> m.get(1));
         assertThrows(IndexOutOfBoundsException.class, () -> m.get(-1));
     }
+
+    // --- Contiguous Layout Tests ---
+
+    @Test
+    void testContiguousLoadRowMajor() {
+        double[][] data = {
+            {1.0, 2.0, 3.0},
+            {4.0, 5.0, 6.0}
+        };
+        SharedMatrix m = new SharedMatrix(data, StorageLayout.CONTIGUOUS);
+
+        assertEquals(StorageLayout.CONTIGUOUS, m.getLayout());
+        assertEquals(2, m.length());
+        assertEquals(VectorOrientation.ROW_MAJOR, m.getOrientation());
+        assertEquals(3, m.get(1).length());
+        assertEquals(6.0, m.get(1).get(2));
+
+        double[][] result = m.readRowMajor();
+        assertArrayEquals(data[0], result[0]);
+        assertArrayEquals(data[1], result[1]);
+    }
+
+    @Test
+    void testContiguousLoadColumnMajorUsesStridedViews() {
+        double[][] data = {
+            {1.0, 2.0, 3.0},
+            {4.0, 5.0, 6.0}
+        };
+        SharedMatrix m = new SharedMatrix(StorageLayout.CONTIGUOUS);
+        m.loadColumnMajor(data);
+
+        assertEquals(3, m.length()); // 3 columns
+        SharedVector col1 = m.get(1);
+        assertEquals(2, col1.length());
+        assertEquals(2.0, col1.get(0));
+        assertEquals(5.0, col1.get(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> col1.get(2));
+
+        double[][] result = m.readRowMajor();
+        assertArrayEquals(data[0], result[0]);
+        assertArrayEquals(data[1], result[1]);
+    }
+
+    @Test
+    void testContiguousViewOperationsStayInTheirRow() {
+        SharedMatrix m = new SharedMatrix(new double[][]{{1, 2}, {3, 4}}, StorageLayout.CONTIGUOUS);
+        SharedVector other = new SharedVector(new double[]{10, 20}, VectorOrientation.ROW_MAJOR);
+
+        m.get(0).add(other);
+        m.get(1).negate();
+
+        assertArrayEquals(new double[]{11, 22}, m.readRowMajor()[0]);
+        assertArrayEquals(new double[]{-3, -4}, m.readRowMajor()[1]);
+        assertEquals(11 * 10 + 22 * 20, m.get(0).dot(other), 0.0001);
+    }
+
+    @Test
+    void testContiguousVecMatMul() {
+        // [1, 2] x [[1, 2, 3], [4, 5, 6]] = [9, 12, 15]
+        SharedMatrix left = new SharedMatrix(new double[][]{{1, 2}}, StorageLayout.CONTIGUOUS);
+        SharedMatrix right = new SharedMatrix(new double[][]{{1, 2, 3}, {4, 5, 6}}, StorageLayout.CONTIGUOUS);
+        SharedMatrix rightColumns = new SharedMatrix(StorageLayout.CONTIGUOUS);
+        rightColumns.loadColumnMajor(new double[][]{{1, 2, 3}, {4, 5, 6}});
+
+        left.get(0).vecMatMul(right);
+        assertArrayEquals(new double[]{9, 12, 15}, left.readRowMajor()[0]);
+
+        SharedVector v = new SharedVector(new double[]{1, 2}, VectorOrientation.ROW_MAJOR);
+        v.vecMatMul(rightColumns);
+        assertEquals(3, v.length());
+        assertEquals(15.0, v.get(2), 0.0001);
+    }
+
+    @Test
+    void testContiguousRejectsRaggedRows() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new SharedMatrix(new double[][]{{1, 2}, {3}}, StorageLayout.CONTIGUOUS));
+    }
+
+    // --- Off-Heap Layout Tests ---
+
+    @Test
+    void testOffHeapLoadAndOperations() {
+        try (OffHeapArena arena = new OffHeapArena()) {
+            SharedMatrix m = new SharedMatrix(arena);
+            m.loadRowMajor(new double[][]{{1, 2}, {3, 4}});
+
+            assertEquals(StorageLayout.OFF_HEAP, m.getLayout());
+            assertTrue(m.get(0).isOffHeap());
+            assertEquals(2 * 2 * Double.BYTES, arena.liveBytes());
+
+            m.get(0).add(new SharedVector(new double[]{1, 1}, VectorOrientation.ROW_MAJOR));
+            m.get(1).negate();
+            assertArrayEquals(new double[]{2, 3}, m.readRowMajor()[0]);
+            assertArrayEquals(new double[]{-3, -4}, m.readRowMajor()[1]);
+
+            SharedMatrix right = new SharedMatrix(arena);
+            right.loadColumnMajor(new double[][]{{1, 0}, {0, 1}});
+            m.get(0).vecMatMul(right);
+            assertArrayEquals(new double[]{2, 3}, m.readRowMajor()[0]);
+        }
+    }
+
+    @Test
+    void testOffHeapReloadAndUnloadReleaseMemory() {
+        try (OffHeapArena arena = new OffHeapArena()) {
+            SharedMatrix m = new SharedMatrix(arena);
+            m.loadRowMajor(new double[][]{{1, 2, 3}});
+            m.loadColumnMajor(new double[][]{{1}, {2}});
+            assertEquals(2 * Double.BYTES, arena.liveBytes());
+            assertEquals(VectorOrientation.COLUMN_MAJOR, m.getOrientation());
+            assertArrayEquals(new double[]{2}, m.readRowMajor()[1]);
+
+            m.unload();
+            assertEquals(0, m.length());
+            assertEquals(0, arena.liveBytes());
+        }
+    }
+
+    @Test
+    void testOffHeapLayoutRequiresArena() {
+        assertThrows(IllegalArgumentException.class, () -> new SharedMatrix(StorageLayout.OFF_HEAP));
+    }
+
+    @Test
+    void testAdoptRowMajorTakesOwnershipOfPerVectorRows() {
+        double[][] rows = {{1, 2}, {3, 4}};
+        SharedMatrix adopted = new SharedMatrix(StorageLayout.PER_VECTOR);
+        adopted.adoptRowMajor(rows);
+        adopted.get(0).negate();
+        assertArrayEquals(new double[]{-1, -2}, rows[0]);
+
+        SharedMatrix copied = new SharedMatrix(StorageLayout.CONTIGUOUS);
+        copied.adoptRowMajor(rows);
+        copied.get(1).negate();
+        assertArrayEquals(new double[]{3, 4}, rows[1]);
+        assertArrayEquals(new double[]{-3, -4}, copied.readRowMajor()[1]);
+    }
+
+    // --- Mapped Layout Tests ---
+
+    @Test
+    void testMappedLoadOperationsAndRelease(@TempDir Path dir) throws IOException {
+        try (MappedArena arena = new MappedArena(dir)) {
+            SharedMatrix m = new SharedMatrix(arena);
+            m.loadRowMajor(new double[][]{{1, 2}, {3, 4}});
+
+            assertEquals(StorageLayout.MAPPED, m.getLayout());
+            assertEquals(2 * 2 * Double.BYTES, arena.liveBytes());
+            m.get(0).add(new SharedVector(new double[]{1, 1}, VectorOrientation.ROW_MAJOR));
+            m.get(1).negate();
+            assertArrayEquals(new double[]{2, 3}, m.readRowMajor()[0]);
+            assertArrayEquals(new double[]{-3, -4}, m.readRowMajor()[1]);
+
+            m.unload();
+            assertEquals(0, arena.liveBytes());
+            // the temp files are unlinked as soon as they are mapped
+            try (Stream<Path> files = Files.list(dir)) {
+                assertEquals(0, files.count());
+            }
+        }
+    }
+
+    @Test
+    void testMappedArenaRejectsMissingDirectory(@TempDir Path dir) {
+        assertThrows(IllegalArgumentException.class, () -> new MappedArena(dir.resolve("missing")));
+    }
+
+    @Test
+    void testLoadRowMajorCopiesAnotherMatrix() {
+        SharedMatrix source = new SharedMatrix();
+        source.loadColumnMajor(new double[][]{{1, 2, 3}, {4, 5, 6}});
+        SharedMatrix copy = new SharedMatrix(StorageLayout.PER_VECTOR);
+        copy.loadRowMajor(source);
+
+        assertEquals(VectorOrientation.ROW_MAJOR, copy.getOrientation());
+        assertArrayEquals(new double[]{1, 2, 3}, copy.readRowMajor()[0]);
+        assertArrayEquals(new double[]{4, 5, 6}, copy.readRowMajor()[1]);
+
+        SharedMatrix empty = new SharedMatrix();
+        empty.loadEmpty(2, 3);
+        assertEquals(2, empty.rowCount());
+        assertArrayEquals(new double[]{0, 0, 0}, empty.readRowMajor()[1]);
+    }
+
+    // --- Transpose Tests ---
+
+    @Test
+    void testTransposeKernelMatchesNaive() {
+        // sizes past the leaf block in both dimensions, not multiples of it
+        int rows = 37, cols = 70;
+        double[] src = new double[rows * cols];
+        for (int i = 0; i < src.length; i++) {
+            src[i] = i;
+        }
+        double[] dst = new double[rows * cols];
+        TransposeKernel.transpose(src, rows, cols, dst);
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                assertEquals(src[r * cols + c], dst[c * rows + r]);
+            }
+        }
+    }
+
+    @Test
+    void testMatrixTransposeIsAView() {
+        SharedMatrix m = new SharedMatrix(StorageLayout.CONTIGUOUS);
+        m.loadTransposed(new double[][]{{1, 2, 3}, {4, 5, 6}});
+
+        assertEquals(VectorOrientation.COLUMN_MAJOR, m.getOrientation());
+        assertEquals(3, m.rowCount());
+        assertArrayEquals(new double[]{1, 2, 3, 4, 5, 6}, m.packColumnMajor());
+        assertArrayEquals(new double[]{1, 4, 2, 5, 3, 6}, m.packRowMajor());
+        assertArrayEquals(new double[]{1, 2, 3}, m.readVectors()[0]);
+
+        m.transpose();
+        assertEquals(VectorOrientation.ROW_MAJOR, m.getOrientation());
+        assertArrayEquals(new double[]{4, 5, 6}, m.readRowMajor()[1]);
+    }
+
+    @Test
+    void testRelayoutKeepsTheMatrix() {
+        SharedMatrix m = new SharedMatrix(StorageLayout.PER_VECTOR);
+        m.loadColumnMajor(new double[][]{{1, 2, 3}, {4, 5, 6}});
+        m.relayout(VectorOrientation.ROW_MAJOR);
+
+        assertEquals(VectorOrientation.ROW_MAJOR, m.getOrientation());
+        assertEquals(2, m.length());
+        assertEquals(6.0, m.get(1).get(2));
+
+        m.relayout(VectorOrientation.COLUMN_MAJOR);
+        assertEquals(3, m.length());
+        assertArrayEquals(new double[]{1, 2, 3}, m.readRowMajor()[0]);
+    }
+
+    // --- Tiled Layout Tests ---
+
+    @Test
+    void testTiledMatrixRoundTripWithEdgeTiles() {
+        double[][] data = {{1, 2, 3, 4, 5}, {6, 7, 8, 9, 10}, {11, 12, 13, 14, 15}};
+        TiledMatrix m = TiledMatrix.fromRowMajor(data, 2);
+
+        assertEquals(2, m.tileRows());
+        assertEquals(3, m.tileCols());
+        assertEquals(14.0, m.get(2, 3));
+        assertArrayEquals(data[2], m.toRowMajor()[2]);
+    }
+
+    @Test
+    void testTiledMatrixTileOperations() {
+        TiledMatrix m = TiledMatrix.fromRowMajor(new double[][]{{1, 2, 3}, {4, 5, 6}}, 2);
+        TiledMatrix t = new TiledMatrix(3, 2, 2);
+        for (int ti = 0; ti < m.tileRows(); ti++) {
+            for (int tj = 0; tj < m.tileCols(); tj++) {
+                m.addTile(m, ti, tj);
+                m.negateTile(ti, tj);
+                m.transposeTileInto(t, ti, tj);
+            }
+        }
+        assertArrayEquals(new double[]{-2, -4, -6}, m.toRowMajor()[0]);
+        assertArrayEquals(new double[]{-6, -12}, t.toRowMajor()[2]);
+        assertThrows(IllegalArgumentException.class, () -> m.addTile(t, 0, 0));
+    }
+
+    @Test
+    void testTiledMultiplicationMatchesGemm() {
+        int rows = 9, inner = 7, cols = 11;
+        double[] a = new double[rows * inner];
+        double[] b = new double[inner * cols];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = (i % 5) - 2;
+        }
+        for (int i = 0; i < b.length; i++) {
+            b[i] = (i % 3) * 0.5;
+        }
+        double[] expected = new double[rows * cols];
+        GemmKernel.multiply(a, b, expected, rows, inner, cols);
+
+        double[][] aRows = new double[rows][];
+        for (int i = 0; i < rows; i++) {
+            aRows[i] = Arrays.copyOfRange(a, i * inner, (i + 1) * inner);
+        }
+        double[][] bRows = new double[inner][];
+        for (int i = 0; i < inner; i++) {
+            bRows[i] = Arrays.copyOfRange(b, i * cols, (i + 1) * cols);
+        }
+        TiledMatrix left = TiledMatrix.fromRowMajor(aRows, 4);
+        TiledMatrix right = TiledMatrix.fromRowMajor(bRows, 4);
+        TiledMatrix product = new TiledMatrix(rows, cols, 4);
+        for (int ti = 0; ti < product.tileRows(); ti++) {
+            for (int tj = 0; tj < product.tileCols(); tj++) {
+                product.multiplyTile(left, right, ti, tj);
+            }
+        }
+        double[][] actual = product.toRowMajor();
+        for (int i = 0; i < rows; i++) {
+            assertArrayEquals(Arrays.copyOfRange(expected, i * cols, (i + 1) * cols), actual[i], 1e-12);
+        }
+        assertThrows(IllegalArgumentException.class, () -> product.multiplyTile(product, right, 0, 0));
+    }
+
+    // --- GEMM Kernel Tests ---
+
+    @Test
+    void testGemmKernelConsumesTransposedOperand() {
+        int rows = 5, inner = 300, cols = 70;
+        double[] a = new double[rows * inner];
+        double[] b = new double[inner * cols];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = (i % 11) - 5;
+        }
+        for (int i = 0; i < b.length; i++) {
+            b[i] = (i % 5) * 0.25;
+        }
+        double[] bt = new double[b.length];
+        TransposeKernel.transpose(b, inner, cols, bt);
+        double[] expected = new double[rows * cols];
+        double[] actual = new double[rows * cols];
+        GemmKernel.multiply(a, b, expected, rows, inner, cols);
+        GemmKernel.multiplyTransposed(a, bt, actual, rows, inner, cols);
+        assertArrayEquals(expected, actual, 1e-9);
+    }
+
+    @Test
+    void testGemmKernelLeadingDimensions() {
+        // rows 1..2, columns 1..2 of a 3x4 a, times the 2x2 top of a 2x3 b, into the middle of c
+        double[] a = {0, 0, 0, 0, 0, 1, 2, 0, 0, 3, 4, 0};
+        double[] b = {5, 6, 9, 7, 8, 9};
+        double[] c = new double[8];
+        GemmKernel.multiply(a, 5, 4, b, 0, 3, c, 2, 3, 2, 2, 2);
+        assertArrayEquals(new double[]{0, 0, 19, 22, 0, 43, 50, 0}, c, 1e-12);
+    }
+
+    @Test
+    void testGemmKernelMatchesNaiveMultiplication() {
+        // odd sizes exercise the edges of the register and cache tiles
+        int rows = 7, inner = 300, cols = 530;
+        double[] a = new double[rows * inner];
+        double[] b = new double[inner * cols];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = (i % 13) - 6;
+        }
+        for (int i = 0; i < b.length; i++) {
+            b[i] = (i % 7) * 0.5;
+        }
+        double[] c = new double[rows * cols];
+        GemmKernel.multiply(a, b, c, rows, inner, cols);
+
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                double expected = 0.0;
+                for (int p = 0; p < inner; p++) {
+                    expected += a[i * inner + p] * b[p * cols + j];
+                }
+                assertEquals(expected, c[i * cols + j], 1e-9);
+            }
+        }
+    }
+
+    @Test
+    void testPackRowMajorAndRowAccess() {
+        double[][] data = {
+            {1.0, 2.0, 3.0},
+            {4.0, 5.0, 6.0}
+        };
+        SharedMatrix columns = new SharedMatrix();
+        columns.loadColumnMajor(data);
+        assertEquals(2, columns.rowCount());
+        assertEquals(3, columns.columnCount());
+        assertArrayEquals(new double[]{1, 2, 3, 4, 5, 6}, columns.packRowMajor());
+
+        SharedMatrix rows = new SharedMatrix(data, StorageLayout.CONTIGUOUS);
+        double[] buffer = new double[6];
+        rows.readRows(0, 2, buffer);
+        assertArrayEquals(new double[]{1, 2, 3, 4, 5, 6}, buffer);
+
+        rows.writeRows(1, 2, new double[]{7, 8}, 2); // the row changes length
+        double[][] result = rows.readRowMajor();
+        assertArrayEquals(new double[]{1, 2, 3}, result[0]);
+        assertArrayEquals(new double[]{7, 8}, result[1]);
+    }
+
+    // --- Vector Kernel Tests ---
+
+    @Test
+    void testVectorKernelsMatchScalarLoops() {
+        // lengths around the SIMD width cover both the vector body and the scalar tail
+        for (int len = 0; len <= 19; len++) {
+            double[] x = new double[len + 3];
+            double[] y = new double[len + 3];
+            for (int i = 0; i < x.length; i++) {
+                x[i] = i * 1.5 - 4;
+                y[i] = 10 - i;
+            }
+            assertEquals(VectorKernels.dotScalar(x, 1, y, 2, len), VectorKernels.dot(x, 1, y, 2, len), 1e-9);
+
+            double[] expected = y.clone();
+            double[] actual = y.clone();
+            VectorKernels.addScalar(expected, 2, x, 1, len);
+            VectorKernels.add(actual, 2, x, 1, len);
+            assertArrayEquals(expected, actual, 1e-12);
+
+            VectorKernels.axpyScalar(0.5, x, 0, expected, 1, len);
+            VectorKernels.axpy(0.5, x, 0, actual, 1, len);
+            assertArrayEquals(expected, actual, 1e-12);
+
+            VectorKernels.negateScalar(expected, 3, len);
+            VectorKernels.negate(actual, 3, len);
+            assertArrayEquals(expected, actual, 1e-12);
+        }
+    }
+
+    @Test
+    void testVectorKernelsAxpy4() {
+        int len = 21;
+        double[] x = new double[len];
+        for (int i = 0; i < len; i++) {
+            x[i] = i + 1;
+        }
+        double[] expected = new double[4 * len];
+        double[] actual = new double[4 * len];
+        VectorKernels.axpy4Scalar(1, 2, 3, 4, x, 0, expected, 0, len, 2 * len, 3 * len, len);
+        VectorKernels.axpy4(1, 2, 3, 4, x, 0, actual, 0, len, 2 * len, 3 * len, len);
+        assertArrayEquals(expected, actual, 1e-12);
+        assertEquals(4 * len, actual[4 * len - 1], 1e-12);
+    }
+
+    // --- Strassen Kernel Tests ---
+
+    @Test
+    void testStrassenMatchesBlockedKernel() {
+        // odd sizes force zero padding at several recursion levels
+        for (int n : new int[]{1, 2, 5, 37}) {
+            double[] a = new double[n * n];
+            double[] b = new double[n * n];
+            for (int i = 0; i < n * n; i++) {
+                a[i] = (i % 11) - 5;
+                b[i] = (i % 5) * 0.25 + 1;
+            }
+            double[] expected = new double[n * n];
+            GemmKernel.multiply(a, b, expected, n, n, n);
+
+            assertArrayEquals(expected, StrassenKernel.multiply(a, b, n, 4), 1e-9);
+        }
+    }
+
+    // --- Sparse Matrix Tests ---
+
+    private static final double[][] SPARSE_A = {{1, 0, 0, 2}, {0, 0, 0, 0}, {0, 3, 0, 0}};
+    private static final double[][] SPARSE_B = {{0, 4, 0}, {0, 0, 0}, {5, 0, 0}, {0, 0, 6}};
+
+    private static double[][] denseProduct(double[][] a, double[][] b) {
+        double[][] c = new double[a.length][b[0].length];
+        for (int i = 0; i < a.length; i++) {
+            for (int k = 0; k < b.length; k++) {
+                for (int j = 0; j < b[0].length; j++) {
+                    c[i][j] += a[i][k] * b[k][j];
+                }
+            }
+        }
+        return c;
+    }
+
+    @Test
+    void testSparseMatrixRoundTrip() {
+        SparseMatrix m = SparseMatrix.fromDense(SPARSE_A);
+
+        assertEquals(3, m.rowCount());
+        assertEquals(4, m.columnCount());
+        assertEquals(3, m.nonZeros());
+        assertEquals(0.25, m.density(), 1e-12);
+        assertEquals(3.0, m.get(2, 1));
+        assertEquals(0.0, m.get(1, 3));
+        assertArrayEquals(SPARSE_A, m.toDense());
+    }
+
+    @Test
+    void testSparseTransposeAndNegate() {
+        SparseMatrix t = SparseMatrix.fromDense(SPARSE_A).transpose();
+
+        assertArrayEquals(new double[][] {{1, 0, 0}, {0, 0, 3}, {0, 0, 0}, {2, 0, 0}}, t.toDense());
+        assertEquals(-2.0, t.negate().get(3, 0));
+    }
+
+    @Test
+    void testSparseAddition() {
+        SparseMatrix m = SparseMatrix.fromDense(SPARSE_A);
+        SparseMatrix sum = m.add(m.negate().transpose().transpose());
+        assertEquals(0, sum.nonZeros()); // cancelled entries are dropped
+        assertArrayEquals(new double[3][4], sum.toDense());
+
+        double[][] dense = {{1, 1, 1, 1}, {1, 1, 1, 1}, {1, 1, 1, 1}};
+        m.addRowsTo(dense, 0, 3);
+        assertArrayEquals(new double[][] {{2, 1, 1, 3}, {1, 1, 1, 1}, {1, 4, 1, 1}}, dense);
+
+        assertThrows(IllegalArgumentException.class, () -> m.add(m.transpose()));
+    }
+
+    @Test
+    void testSparseMultiplicationMatchesDense() {
+        SparseMatrix a = SparseMatrix.fromDense(SPARSE_A);
+        SparseMatrix b = SparseMatrix.fromDense(SPARSE_B);
+        double[][] expected = denseProduct(SPARSE_A, SPARSE_B);
+
+        SparseMatrix stacked = SparseMatrix.stack(
+                new SparseMatrix[] {a.multiplyRows(b, 0, 2), a.multiplyRows(b, 2, 3)}, 3);
+        assertArrayEquals(expected, stacked.toDense());
+
+        double[][] sparseByDense = new double[3][3];
+        a.multiplyDenseRows(SPARSE_B, 0, 3, sparseByDense);
+        assertArrayEquals(expected, sparseByDense);
+
+        double[][] denseBySparse = new double[3][3];
+        b.multiplyByDenseRows(SPARSE_A, 0, 3, denseBySparse);
+        assertArrayEquals(expected, denseBySparse);
+
+        assertThrows(IllegalArgumentException.class, () -> a.multiplyRows(a, 0, 1));
+
+        // like the dense kernels, a zero of the dense operand times infinity is NaN
+        SparseMatrix withInfinity = SparseMatrix.fromDense(new double[][] {{Double.POSITIVE_INFINITY}, {1}});
+        double[][] product = new double[1][1];
+        withInfinity.multiplyByDenseRows(new double[][] {{0, 1}}, 0, 1, product);
+        assertTrue(Double.isNaN(product[0][0]));
+    }
+
+    // --- Single Precision Tests ---
+
+    @Test
+    void testSinglePrecisionMatrixRoundsElements() {
+        double[][] data = {{0.1, 2}, {3, 4}};
+        for (StorageLayout layout : new StorageLayout[]{StorageLayout.PER_VECTOR, StorageLayout.CONTIGUOUS}) {
+            SharedMatrix m = new SharedMatrix(layout, Precision.SINGLE);
+            m.loadColumnMajor(data);
+
+            assertTrue(m.get(0).isSinglePrecision());
+            assertEquals((double) 0.1f, m.readRowMajor()[0][0]);
+            assertArrayEquals(new float[]{0.1f, 2, 3, 4}, m.packRowMajorFloats());
+        }
+    }
+
+    @Test
+    void testSinglePrecisionVectorOperations() {
+        SharedMatrix m = new SharedMatrix(StorageLayout.CONTIGUOUS, Precision.SINGLE);
+        m.loadRowMajor(new double[][]{{1, 2, 3}, {4, 5, 6}});
+        SharedVector first = m.get(0);
+
+        first.add(m.get(1));
+        first.negate();
+        assertEquals(-9.0, first.get(2));
+        assertEquals(-5 * 4 - 7 * 5 - 9 * 6, first.dot(m.get(1)), 1e-6);
+    }
+
+    @Test
+    void testMixedPrecisionAccumulatesInDouble() {
+        // 1e8f + 1 rounds back to 1e8f, so a float32 accumulator loses the middle term
+        double[][] data = {{1e8, 1, -1e8}, {1, 1, 1}};
+        SharedMatrix single = new SharedMatrix(StorageLayout.PER_VECTOR, Precision.SINGLE);
+        SharedMatrix mixed = new SharedMatrix(StorageLayout.PER_VECTOR, Precision.MIXED);
+        single.loadRowMajor(data);
+        mixed.loadRowMajor(data);
+
+        assertEquals(0.0, single.get(0).dot(single.get(1)));
+        assertEquals(1.0, mixed.get(0).dot(mixed.get(1)));
+    }
+
+    @Test
+    void testFloatKernelsMatchScalar() {
+        int len = 37;
+        float[] x = new float[len];
+        for (int i = 0; i < len; i++) {
+            x[i] = i + 1;
+        }
+        float[] expected = new float[4 * len];
+        float[] actual = new float[4 * len];
+        VectorKernels.axpy4Scalar(1f, 2f, 3f, 4f, x, 0, expected, 0, len, 2 * len, 3 * len, len);
+        VectorKernels.axpy4(1f, 2f, 3f, 4f, x, 0, actual, 0, len, 2 * len, 3 * len, len);
+        assertArrayEquals(expected, actual);
+        assertEquals(VectorKernels.dotScalar(x, 0, x, 0, len), VectorKernels.dot(x, 0, x, 0, len));
+    }
+
+    @Test
+    void testSingleGemmMatchesDouble() {
+        int rows = 7;
+        int inner = 9;
+        int cols = 5;
+        double[] a = new double[rows * inner];
+        double[] b = new double[inner * cols];
+        float[] af = new float[a.length];
+        float[] bf = new float[b.length];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = af[i] = (i % 7) - 3;
+        }
+        for (int i = 0; i < b.length; i++) {
+            b[i] = bf[i] = (i % 4) * 0.5f;
+        }
+        double[] expected = new double[rows * cols];
+        float[] actual = new float[rows * cols];
+        GemmKernel.multiply(a, b, expected, rows, inner, cols);
+        GemmKernel.multiply(af, bf, actual, rows, inner, cols);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], actual[i], 1e-5);
+        }
+    }
+
+    // --- Buffer Pool Tests ---
+
+    @Test
+    void testBufferPoolReusesExactSizeClasses() {
+        BufferPool pool = new BufferPool();
+        double[] buffer = pool.acquire(8);
+        pool.release(buffer);
+
+        assertNotSame(buffer, pool.acquire(4));
+        assertSame(buffer, pool.acquire(8));
+        assertEquals(1, pool.reusedCount());
+        pool.release(buffer);
+        pool.clear();
+        assertNotSame(buffer, pool.acquire(8));
+    }
+
+    @Test
+    void testBufferPoolEvictsLeastRecentSizeClassOverBudget() {
+        BufferPool pool = new BufferPool(32 * Double.BYTES);
+        double[] old = new double[8];
+        double[] recent = new double[16];
+        pool.release(old);
+        pool.release(recent);
+        assertEquals(24 * Double.BYTES, pool.retainedBytes());
+
+        double[] newest = new double[16];
+        pool.release(newest);
+        assertEquals(32 * Double.BYTES, pool.retainedBytes());
+        assertNotSame(old, pool.acquire(8));
+        assertSame(newest, pool.acquire(16));
+        assertSame(recent, pool.acquire(16));
+        assertEquals(0, pool.retainedBytes());
+
+        pool.release(new double[33]);
+        assertEquals(0, pool.retainedBytes());
+        assertThrows(IllegalArgumentException.class, () -> new BufferPool(-1));
+    }
+
+    @Test
+    void testPooledMatrixRecyclesFlatStorage() {
+        BufferPool pool = new BufferPool();
+        SharedMatrix m = new SharedMatrix(StorageLayout.CONTIGUOUS);
+        m.setBufferPool(pool);
+        m.loadRowMajor(new double[][]{{1, 2}, {3, 4}});
+        m.loadRowMajor(new double[][]{{5, 6}, {7, 8}}); // the first 2x2 buffer goes back to the pool
+
+        double[][] rows = m.readRowMajor();
+        assertArrayEquals(new double[][]{{5, 6}, {7, 8}}, rows);
+        m.loadColumnMajor(new double[][]{{9, 10}, {11, 12}});
+        assertEquals(1, pool.reusedCount());
+        assertArrayEquals(new double[][]{{9, 10}, {11, 12}}, m.readRowMajor());
+    }
+
+    @Test
+    void testScratchBuffersArePerThreadAndGrow() throws InterruptedException {
+        double[] small = ScratchBuffers.doubles(ScratchBuffers.OPERAND, 4);
+        assertSame(small, ScratchBuffers.doubles(ScratchBuffers.OPERAND, 2));
+        assertTrue(ScratchBuffers.doubles(ScratchBuffers.OPERAND, 16).length >= 16);
+
+        AtomicReference<double[]> other = new AtomicReference<>();
+        Thread thread = new Thread(() -> other.set(ScratchBuffers.doubles(ScratchBuffers.OPERAND, 16)));
+        thread.start();
+        thread.join();
+        assertNotSame(ScratchBuffers.doubles(ScratchBuffers.OPERAND, 16), other.get());
+    }
+
+    @Test
+    void testScratchBuffersArePooledAcrossVirtualThreads() throws InterruptedException {
+        double[] own = ScratchBuffers.doubles(ScratchBuffers.PANEL, 8);
+        AtomicReference<double[]> first = new AtomicReference<>();
+        AtomicReference<double[]> second = new AtomicReference<>();
+        Thread.ofVirtual().start(() -> ScratchBuffers.runPooled(
+                () -> first.set(ScratchBuffers.doubles(ScratchBuffers.PANEL, 64)))).join();
+        Thread.ofVirtual().start(() -> ScratchBuffers.runPooled(
+                () -> second.set(ScratchBuffers.doubles(ScratchBuffers.PANEL, 32)))).join();
+        assertSame(first.get(), second.get());
+
+        ScratchBuffers.runPooled(() -> assertNotSame(own, ScratchBuffers.doubles(ScratchBuffers.PANEL, 8)));
+        assertSame(own, ScratchBuffers.doubles(ScratchBuffers.PANEL, 8));
+    }
 }
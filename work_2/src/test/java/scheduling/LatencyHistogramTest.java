@@ -0,0 +1,49 @@
+package scheduling;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for LatencyHistogram.
+ * Verifies the bucket bounds and that quantiles stay within a bucket of the exact value.
+ */
+class LatencyHistogramTest {
+
+    /**
+     * Tests that every value falls in a bucket whose top is at or above it and within 1/16 of it.
+     */
+    @Test
+    void testBuckets() {
+        long[] values = {0, 1, 15, 16, 17, 31, 32, 1000, 123_456_789L, Long.MAX_VALUE};
+        for (long value : values) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            long top = LatencyHistogram.highestIn(bucket);
+            assertTrue(top >= value, "Bucket of " + value + " ends at " + top);
+            assertTrue(top - value <= value / 16, "Bucket of " + value + " is too wide: " + top);
+            if (bucket > 0) {
+                assertTrue(LatencyHistogram.highestIn(bucket - 1) < value, "Buckets of " + value + " overlap");
+            }
+        }
+    }
+
+    /**
+     * Tests the quantiles, count, mean and max of 1..1000.
+     */
+    @Test
+    void testQuantiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.quantile(0.99), "Empty histogram");
+        for (int i = 1000; i >= 1; i--) {
+            histogram.record(i);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500, histogram.getMean());
+        assertEquals(1000, histogram.getMax());
+        assertEquals(500, histogram.quantile(0.5), 500 / 16);
+        assertEquals(990, histogram.quantile(0.99), 990 / 16);
+        assertEquals(999, histogram.quantile(0.999), 999 / 16);
+        assertEquals(1000, histogram.quantile(1.0));
+        assertThrows(IllegalArgumentException.class, () -> histogram.quantile(1.5));
+    }
+}
@@ -1,5 +1,7 @@
 package scheduling;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInfo;
@@ -8,10 +10,14 @@ import org.junit.jupiter.api.extension.RegisterExtension;
 import org.junit.jupiter.api.extension.TestWatcher;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -144,6 +150,21 @@ class TiredExecutorTest {
         executor.shutdown();
     }
 
+    /**
+     * Tests that the error of a task run with submit is reported through its future.
+     */
+    @Test
+    void testSubmitReportsError() {
+        TiredExecutor executor = new TiredExecutor(2);
+        CompletableFuture<Void> future = executor.submit(() -> {
+            throw new RuntimeException("Submitted error");
+        });
+
+        RuntimeException thrown = assertThrows(RuntimeException.class, () -> executor.join(future));
+        assertEquals("Submitted error", thrown.getMessage());
+        executor.shutdown();
+    }
+
     /**
      * Tests that when multiple tasks are submitted and one fails, the error is propagated.
      */
@@ -173,4 +194,388 @@ class TiredExecutorTest {
         assertEquals("Error at 5", thrown.getMessage());
         executor.shutdown();
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests that the work-stealing mode runs every task of a batch and propagates errors.
+     */
+    @Test
+    void testWorkStealingSubmitAll() {
+        TiredExecutor executor = new TiredExecutor(4, SchedulingMode.WORK_STEALING);
+        AtomicInteger counter = new AtomicInteger(0);
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            tasks.add(counter::incrementAndGet);
+        }
+        executor.submitAll(tasks);
+        assertEquals(1000, counter.get(), "All tasks should be executed");
+
+        tasks.add(() -> {
+            throw new RuntimeException("Stolen error");
+        });
+        RuntimeException thrown = assertThrows(RuntimeException.class, () -> executor.submitAll(tasks));
+        assertEquals("Stolen error", thrown.getMessage());
+        assertEquals(2000, counter.get(), "Tasks around the failing one should still run");
+        executor.shutdown();
+    }
+
+    /**
+     * Tests that an idle worker steals from a busy one: the first task of a chunk waits for the
+     * second task of the same chunk, which only another worker can run.
+     */
+    @Test
+    void testWorkStealingIdleWorkerSteals() {
+        TiredExecutor executor = new TiredExecutor(2, SchedulingMode.WORK_STEALING);
+        CountDownLatch released = new CountDownLatch(1);
+        AtomicInteger timeouts = new AtomicInteger(0);
+        List<Runnable> tasks = new ArrayList<>();
+        tasks.add(() -> {
+            try {
+                if (!released.await(5, TimeUnit.SECONDS)) {
+                    timeouts.incrementAndGet();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        tasks.add(released::countDown);
+        tasks.add(() -> {});
+        tasks.add(() -> {});
+
+        executor.submitAll(tasks);
+        assertEquals(0, timeouts.get(), "The blocked chunk should have been stolen from");
+        executor.shutdown();
+    }
+
+    /**
+     * Tests that a proportional batch of mixed costs runs every task once and reports errors.
+     */
+    @Test
+    void testProportionalSubmitAll() {
+        TiredExecutor executor = new TiredExecutor(4, SchedulingMode.PROPORTIONAL);
+        AtomicInteger counter = new AtomicInteger(0);
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            tasks.add(CostedTask.of(1 + i % 7, counter::incrementAndGet));
+        }
+        executor.submitAll(tasks);
+        executor.submitAll(tasks); // the second batch is split by the calibrated throughput
+        assertEquals(2000, counter.get(), "All tasks should be executed");
+
+        tasks.add(() -> {
+            throw new RuntimeException("Proportional error");
+        });
+        RuntimeException thrown = assertThrows(RuntimeException.class, () -> executor.submitAll(tasks));
+        assertEquals("Proportional error", thrown.getMessage());
+        assertEquals(3000, counter.get(), "Tasks around the failing one should still run");
+        executor.shutdown();
+    }
+
+    /**
+     * Tests that the batch is split by cost, not by count: two equally costly tasks go to
+     * different workers, which can only be seen if both run at the same time.
+     */
+    @Test
+    void testProportionalSplitsByCost() {
+        TiredExecutor executor = new TiredExecutor(2, SchedulingMode.PROPORTIONAL);
+        CountDownLatch bothRunning = new CountDownLatch(2);
+        AtomicInteger timeouts = new AtomicInteger(0);
+        Runnable meet = () -> {
+            bothRunning.countDown();
+            try {
+                if (!bothRunning.await(5, TimeUnit.SECONDS)) {
+                    timeouts.incrementAndGet();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        List<Runnable> tasks = new ArrayList<>();
+        tasks.add(CostedTask.of(1000, meet));
+        tasks.add(CostedTask.of(1000, meet));
+
+        executor.submitAll(tasks);
+        assertEquals(0, timeouts.get(), "Each costly task should have had its own worker");
+        executor.shutdown();
+    }
+
+    /**
+     * Tests that a straggling speculative task is duplicated on an idle worker, that the batch
+     * completes with the duplicate, and that only one attempt commits.
+     */
+    @Test
+    void testSpeculationGetsPastStraggler() {
+        TiredExecutor executor = new TiredExecutor(2, SchedulingMode.FATIGUE, true);
+        CountDownLatch released = new CountDownLatch(1);
+        AtomicInteger attempts = new AtomicInteger(0);
+        AtomicInteger commits = new AtomicInteger(0);
+        List<Runnable> tasks = new ArrayList<>();
+        tasks.add(SpeculativeTask.of(1, () -> {
+            // only the first attempt is slow
+            if (attempts.incrementAndGet() == 1) {
+                try {
+                    released.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return "straggler";
+        }, result -> commits.incrementAndGet()));
+        for (int i = 0; i < 4; i++) {
+            tasks.add(SpeculativeTask.of(1, () -> "quick", result -> commits.incrementAndGet()));
+        }
+
+        long start = System.nanoTime();
+        executor.submitAll(tasks);
+        long elapsed = System.nanoTime() - start;
+        assertTrue(elapsed < TimeUnit.SECONDS.toNanos(5), "The duplicate should have finished the batch");
+        assertEquals(2, attempts.get(), "The straggler should have been duplicated once");
+        assertEquals(5, commits.get(), "Every task should commit exactly once");
+        released.countDown();
+        executor.shutdown();
+        assertEquals(5, commits.get(), "The losing attempt should not commit");
+    }
+
+    /**
+     * Tests that batches submitted asynchronously are tracked separately: a batch completes
+     * while another one is still blocked, and each future reports only its own error.
+     */
+    @Test
+    void testSubmitBatchTracksBatchesSeparately() throws Exception {
+        for (SchedulingMode mode : SchedulingMode.values()) {
+            TiredExecutor executor = new TiredExecutor(2, mode);
+            CountDownLatch released = new CountDownLatch(1);
+            CompletableFuture<Void> blocked = executor.submitBatch(List.of(() -> {
+                try {
+                    released.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            AtomicInteger counter = new AtomicInteger(0);
+            List<Runnable> tasks = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                tasks.add(counter::incrementAndGet);
+            }
+            executor.submitBatch(tasks).get(5, TimeUnit.SECONDS);
+            assertEquals(100, counter.get(), mode + ": the second batch should complete on its own");
+            assertFalse(blocked.isDone(), mode + ": the first batch should still be running");
+
+            CompletableFuture<Void> failing = executor.submitBatch(List.of(() -> {
+                throw new RuntimeException("Batch error");
+            }));
+            ExecutionException thrown = assertThrows(ExecutionException.class, () -> failing.get(5, TimeUnit.SECONDS));
+            assertEquals("Batch error", thrown.getCause().getMessage());
+
+            released.countDown();
+            blocked.get(5, TimeUnit.SECONDS);
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Tests nested fork/join: a recursive sum forks both halves from inside a task and joins them.
+     * With a single worker, or with every worker waiting on a child, this only finishes because
+     * joining workers run the pending subtasks themselves.
+     */
+    @Test
+    void testNestedForkJoin() {
+        for (SchedulingMode mode : SchedulingMode.values()) {
+            for (int threads : new int[] {1, 3}) {
+                TiredExecutor executor = new TiredExecutor(threads, mode);
+                AtomicLong sum = new AtomicLong(0);
+                executor.submitAll(List.of(() -> sumRange(executor, 0, 1000, sum)));
+                assertEquals(999L * 1000 / 2, sum.get(), mode + " with " + threads + " threads");
+                executor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Tests the spinning handoff in every scheduling mode: batches of short tasks, an error,
+     * nested fork/join, and shutdown of workers that are parked or spinning.
+     */
+    @Test
+    void testSpinningHandoff() {
+        for (SchedulingMode mode : SchedulingMode.values()) {
+            TiredExecutor executor = new TiredExecutor(3, mode, false, HandoffMode.SPINNING);
+            AtomicInteger counter = new AtomicInteger(0);
+            for (int round = 0; round < 50; round++) {
+                List<Runnable> tasks = new ArrayList<>();
+                for (int i = 0; i < 20; i++) {
+                    tasks.add(counter::incrementAndGet);
+                }
+                executor.submitAll(tasks);
+            }
+            assertEquals(1000, counter.get(), mode + ": all tasks should be executed");
+
+            RuntimeException thrown = assertThrows(RuntimeException.class, () -> executor.submitAll(List.of(() -> {
+                throw new RuntimeException("Spinning error");
+            })));
+            assertEquals("Spinning error", thrown.getMessage());
+
+            AtomicLong sum = new AtomicLong(0);
+            executor.submitAll(List.of(() -> sumRange(executor, 0, 1000, sum)));
+            assertEquals(999L * 1000 / 2, sum.get(), mode + ": nested fork/join");
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Tests that the latency histograms count every task per worker and per operation, and every
+     * batch of an operation, in both the text report and the JSON snapshot.
+     */
+    @Test
+    void testLatencyMetrics() throws Exception {
+        for (SchedulingMode mode : SchedulingMode.values()) {
+            TiredExecutor executor = new TiredExecutor(3, mode);
+            List<Runnable> tasks = new ArrayList<>();
+            for (int i = 0; i < 30; i++) {
+                tasks.add(() -> {});
+            }
+            executor.submitAll("ADD", tasks);
+            executor.submitAll("ADD", tasks);
+            executor.submitAll(tasks);
+            executor.shutdown();
+
+            JsonNode metrics = new ObjectMapper().readTree(executor.getMetricsJson());
+            long perWorker = 0;
+            for (JsonNode worker : metrics.get("workers")) {
+                perWorker += worker.get("service").get("count").asLong();
+                assertEquals(worker.get("service").get("count"), worker.get("queueWait").get("count"));
+            }
+            assertEquals(90, perWorker, mode + ": every task on some worker");
+            JsonNode add = metrics.get("operations").get("ADD");
+            assertEquals(60, add.get("service").get("count").asLong(), mode + ": tasks of ADD");
+            assertEquals(2, add.get("makespan").get("count").asLong(), mode + ": batches of ADD");
+            assertTrue(add.get("makespan").get("p50").asLong() <= add.get("makespan").get("max").asLong());
+            assertEquals(30, metrics.get("operations").get(TaskExecutor.UNNAMED).get("queueWait").get("count").asLong());
+            assertTrue(executor.getWorkerReport().contains("ADD makespan: Count = 2"), executor.getWorkerReport());
+        }
+    }
+
+    /**
+     * Tests fair share: with a single worker busy on a large batch of one job, a small batch of
+     * another job submitted later still finishes long before the large one.
+     */
+    @Test
+    void testFairShareInterleavesJobs() {
+        for (SchedulingMode mode : SchedulingMode.values()) {
+            TiredExecutor executor = new TiredExecutor(1, mode);
+            Job large = new Job("large", 1.0, 0);
+            Job small = new Job("small", 1.0, 0);
+            List<Runnable> largeTasks = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                largeTasks.add(() -> spin(200_000));
+            }
+            List<Runnable> smallTasks = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                smallTasks.add(() -> spin(200_000));
+            }
+            CompletableFuture<Void> largeDone = executor.submitBatch(large, "MULTIPLY", largeTasks);
+            spin(2_000_000); // the large job is well under way
+            executor.submitAll(small, "ADD", smallTasks);
+            assertFalse(largeDone.isDone(), mode + ": the small job should not wait for the large one");
+            executor.join(largeDone);
+
+            assertEquals(200, executor.getTasksRun(large));
+            assertEquals(5, executor.getTasksRun(small));
+            String report = executor.getWorkerReport();
+            assertTrue(report.contains("Job large") && report.contains("Job small"), report);
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Tests that queued tasks of a higher priority job run before those of a lower one,
+     * whatever the order they were submitted in.
+     */
+    @Test
+    void testJobPriority() throws Exception {
+        for (SchedulingMode mode : SchedulingMode.values()) {
+            TiredExecutor executor = new TiredExecutor(1, mode);
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            CompletableFuture<Void> blocker = executor.submitBatch(List.of(() -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            started.await();
+
+            List<String> order = Collections.synchronizedList(new ArrayList<>());
+            CompletableFuture<Void> low = executor.submitBatch(new Job("low", 1.0, 0), "ADD",
+                    List.of(() -> order.add("low"), () -> order.add("low")));
+            CompletableFuture<Void> high = executor.submitBatch(new Job("high", 1.0, 1), "ADD",
+                    List.of(() -> order.add("high"), () -> order.add("high")));
+            release.countDown();
+            executor.join(blocker);
+            executor.join(low);
+            executor.join(high);
+            assertEquals(List.of("high", "high", "low", "low"), order, mode.toString());
+            executor.shutdown();
+        }
+        assertThrows(IllegalArgumentException.class, () -> new Job("bad", 0, 0));
+    }
+
+    /**
+     * Tests that executors sharing a job, e.g. Job.DEFAULT, each keep their own accounting of it:
+     * a job outstanding on one executor runs normally on the other, and neither counts the tasks
+     * of the other.
+     */
+    @Test
+    void testExecutorsSharingAJobAccountSeparately() throws Exception {
+        TiredExecutor first = new TiredExecutor(1);
+        TiredExecutor second = new TiredExecutor(1);
+        try {
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            CompletableFuture<Void> blocked = first.submitBatch(Job.DEFAULT, "ADD", List.of(() -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            started.await();
+
+            // the default job is outstanding on the first executor while the second runs it
+            second.submitAll(Job.DEFAULT, "ADD", List.of(() -> { }, () -> { }, () -> { }));
+            assertEquals(3, second.getTasksRun(Job.DEFAULT));
+            assertEquals(0, first.getTasksRun(Job.DEFAULT));
+            assertTrue(second.getWorkerReport().contains("Job default (weight 1.00, priority 0): Tasks = 3,"),
+                    second.getWorkerReport());
+
+            release.countDown();
+            first.join(blocked);
+            assertEquals(1, first.getTasksRun(Job.DEFAULT));
+            assertEquals(3, second.getTasksRun(Job.DEFAULT));
+        } finally {
+            first.shutdown();
+            second.shutdown();
+        }
+    }
+
+    private static void spin(long nanos) {
+        long deadline = System.nanoTime() + nanos;
+        while (System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private static void sumRange(TiredExecutor executor, int from, int to, AtomicLong sum) {
+        if (to - from <= 10) {
+            for (int i = from; i < to; i++) {
+                sum.addAndGet(i);
+            }
+            return;
+        }
+        int mid = (from + to) / 2;
+        CompletableFuture<Void> left = executor.fork(() -> sumRange(executor, from, mid, sum));
+        executor.submitAll(List.of(() -> sumRange(executor, mid, to, sum)));
+        executor.join(left);
+    }
+}
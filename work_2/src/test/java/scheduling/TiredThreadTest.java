@@ -246,6 +246,44 @@ class TiredThreadTest {
         thread.join();
     }
 
+    /**
+     * Tests the spinning handoff: tasks run whether they arrive while the worker spins or after it
+     * parked, the single slot rejects a task while full, and shutdown wakes a parked worker.
+     */
+    @Test
+    void testSpinningHandoff() throws InterruptedException {
+        TiredThread thread = new TiredThread(1, 1.0, null, HandoffMode.SPINNING);
+        thread.start();
+
+        CountDownLatch first = new CountDownLatch(1);
+        thread.newTask(first::countDown);
+        assertTrue(first.await(1, TimeUnit.SECONDS), "Task should run");
+
+        Thread.sleep(20); // long enough for the worker to park
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        thread.newTask(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(1, TimeUnit.SECONDS), "Parked worker should be woken");
+
+        CountDownLatch second = new CountDownLatch(1);
+        thread.newTask(second::countDown);
+        assertThrows(IllegalStateException.class, () -> thread.newTask(() -> {}), "Slot is full");
+        release.countDown();
+        assertTrue(second.await(1, TimeUnit.SECONDS), "Queued task should run");
+
+        Thread.sleep(20);
+        thread.shutdown();
+        thread.join(1000);
+        assertFalse(thread.isAlive(), "Parked worker should shut down");
+    }
+
     /**
      * Tests that the thread shuts down properly.
      */
@@ -0,0 +1,81 @@
+package scheduling;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test class for VirtualThreadExecutor.
+ * Verifies that it keeps the TaskExecutor contract of TiredExecutor.
+ */
+class VirtualThreadExecutorTest {
+
+    /**
+     * Tests that a batch runs every task and rethrows the first error.
+     */
+    @Test
+    void testSubmitAll() {
+        VirtualThreadExecutor executor = new VirtualThreadExecutor(4);
+        AtomicInteger counter = new AtomicInteger(0);
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            tasks.add(counter::incrementAndGet);
+        }
+        executor.submitAll(tasks);
+        assertEquals(1000, counter.get(), "All tasks should be executed");
+
+        tasks.add(() -> {
+            throw new RuntimeException("Virtual error");
+        });
+        RuntimeException thrown = assertThrows(RuntimeException.class, () -> executor.submitAll(tasks));
+        assertEquals("Virtual error", thrown.getMessage());
+        executor.shutdown();
+    }
+
+    /**
+     * Tests that at most numThreads tasks run at once.
+     */
+    @Test
+    void testConcurrencyIsBounded() {
+        VirtualThreadExecutor executor = new VirtualThreadExecutor(2);
+        AtomicInteger running = new AtomicInteger(0);
+        AtomicInteger peak = new AtomicInteger(0);
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            tasks.add(() -> {
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+            });
+        }
+        executor.submitAll(tasks);
+        assertTrue(peak.get() <= 2, "No more than two tasks should have run at once");
+        executor.shutdown();
+    }
+
+    /**
+     * Tests that a task can fork and join subtasks even when it holds the only permit.
+     */
+    @Test
+    void testNestedForkJoin() {
+        VirtualThreadExecutor executor = new VirtualThreadExecutor(1);
+        AtomicInteger counter = new AtomicInteger(0);
+        executor.submitAll(List.of(() -> {
+            CompletableFuture<Void> child = executor.fork(counter::incrementAndGet);
+            executor.submitAll(List.of(counter::incrementAndGet, counter::incrementAndGet));
+            executor.join(child);
+        }));
+        assertEquals(3, counter.get(), "Every subtask should have run");
+        assertTrue(executor.getWorkerReport().contains("Tasks = 4"), executor.getWorkerReport());
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,53 @@
+package spl.lae;
+
+import org.junit.jupiter.api.Test;
+
+import parser.ComputationNodeType;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test class for ChunkSizer.
+ * Verifies that tasks stay under the target cost and that every worker gets enough of them.
+ */
+class ChunkSizerTest {
+
+    private static int taskCount(int rows, int rowsPerTask) {
+        return (rows + rowsPerTask - 1) / rowsPerTask;
+    }
+
+    /**
+     * Tests that cheap rows, which would reach the target cost only in large tasks, are still
+     * split into at least TASKS_PER_WORKER tasks per worker.
+     */
+    @Test
+    void testCheapRowsGiveEveryWorkerEnoughTasks() {
+        ChunkSizer sizer = new ChunkSizer(4);
+        int rows = 10_000;
+        int rowsPerTask = sizer.rowsPerTask(ComputationNodeType.ADD, rows, 1, Integer.MAX_VALUE);
+        assertTrue(taskCount(rows, rowsPerTask) >= 4 * ChunkSizer.TASKS_PER_WORKER,
+                rowsPerTask + " rows per task");
+    }
+
+    /**
+     * Tests that expensive rows are cut at the target cost, below what balancing alone would give.
+     */
+    @Test
+    void testExpensiveRowsAreCutAtTheTargetCost() {
+        ChunkSizer sizer = new ChunkSizer(4);
+        long unitsPerRow = ChunkSizer.TARGET_TASK_NANOS; // one row costs the whole target at 1 ns per unit
+        assertEquals(1, sizer.rowsPerTask(ComputationNodeType.MULTIPLY, 10_000, unitsPerRow, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Tests the bounds: at least one row, never more than maxRows, and a single row as it is.
+     */
+    @Test
+    void testBounds() {
+        ChunkSizer sizer = new ChunkSizer(2);
+        assertEquals(1, sizer.rowsPerTask(ComputationNodeType.ADD, 1, 1, Integer.MAX_VALUE));
+        assertEquals(1, sizer.rowsPerTask(ComputationNodeType.ADD, 3, 1, Integer.MAX_VALUE));
+        assertTrue(sizer.rowsPerTask(ComputationNodeType.ADD, 100_000, 1, 16) <= 16);
+    }
+}
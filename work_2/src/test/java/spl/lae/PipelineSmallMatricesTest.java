@@ -9,17 +9,39 @@ import org.junit.jupiter.params.provider.ValueSource;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import memory.BufferArena;
+import memory.BufferPool;
+import memory.MappedArena;
+import memory.OffHeapArena;
+import parser.ComputationNode;
+import scheduling.Job;
+import scheduling.SpeculativeTask;
+import scheduling.TaskExecutor;
+import scheduling.TiredExecutor;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class PipelineSmallMatricesTest {
     private static final ObjectMapper mapper = new ObjectMapper();
     private static final double EPS = 1e-9;
 
-    private static JsonNode runMain(Path inputJson, int threads, Path outputJson) throws Exception {
-        Main.main(new String[] { String.valueOf(threads), inputJson.toString(), outputJson.toString() });
+    private static JsonNode runMain(Path inputJson, int threads, Path outputJson, String... options) throws Exception {
+        String[] args = new String[3 + options.length];
+        args[0] = String.valueOf(threads);
+        args[1] = inputJson.toString();
+        args[2] = outputJson.toString();
+        System.arraycopy(options, 0, args, 3, options.length);
+        Main.main(args);
         assertTrue(Files.isRegularFile(outputJson), "Main did not create output file: " + outputJson);
         return mapper.readTree(outputJson.toFile());
     }
@@ -80,6 +102,24 @@ public class PipelineSmallMatricesTest {
         assertResultMatrix(out, new double[][] {{1, 4}, {2, 5}, {3, 6}});
     }
 
+    @ParameterizedTest
+    @ValueSource(strings = {"--storage=per-vector", "--storage=contiguous", "--storage=off-heap", "--storage=mapped",
+            "--storage=tiled", "--precision=single"})
+    void transposeViewsFeedEveryOperation(String option, @TempDir Path tempDir) throws Exception {
+        // transposed operands on the left and right of a product and of a sum, and a transposed result
+        Path input = writeJson(tempDir, "views.json", """
+                {"operator":"T","operands":[{"operator":"*","operands":[
+                  {"operator":"+","operands":[
+                    {"operator":"*","operands":[{"operator":"T","operands":[[[1,0,2],[0,1,1]]]},[[1,2],[3,4]]]},
+                    {"operator":"T","operands":[[[1,1,1],[2,2,2]]]}]},
+                  {"operator":"T","operands":[[[1,1],[0,1]]]}]}]}
+                """);
+        Path output = tempDir.resolve("out.json");
+
+        JsonNode out = runMain(input, 4, output, option);
+        assertResultMatrix(out, new double[][] {{6, 10, 16}, {4, 6, 10}});
+    }
+
     @ParameterizedTest
     @ValueSource(ints = {1, 4})
     void negateProducesExpectedResult(int threads, @TempDir Path tempDir) throws Exception {
@@ -130,4 +170,409 @@ public class PipelineSmallMatricesTest {
         JsonNode out = runMain(input, threads, output);
         assertResultMatrix(out, new double[][] {{24}});
     }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"--storage=per-vector", "--storage=contiguous", "--storage=off-heap", "--storage=mapped",
+            "--storage=tiled"})
+    void storageLayoutsProduceSameResult(String option, @TempDir Path tempDir) throws Exception {
+        Path input = writeJson(tempDir, "nested.json", """
+                {"operator":"+","operands":[
+                  {"operator":"*","operands":[[[1,2,3],[4,5,6]],{"operator":"T","operands":[[[1,2,3],[4,5,6]]]}]},
+                  {"operator":"-","operands":[[[1,1],[1,1]]]}]}
+                """);
+        Path output = tempDir.resolve("out.json");
+
+        JsonNode out = runMain(input, 4, output, option);
+        assertResultMatrix(out, new double[][] {{13, 31}, {31, 76}});
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"--storage=per-vector", "--storage=contiguous", "--storage=off-heap", "--storage=mapped",
+            "--storage=tiled", "--precision=mixed"})
+    void residentResultsFeedBothOperands(String option, @TempDir Path tempDir) throws Exception {
+        Path input = writeJson(tempDir, "resident.json", """
+                {"operator":"+","operands":[
+                  {"operator":"-","operands":[[[1,2],[3,4]]]},
+                  {"operator":"*","operands":[[[1,2],[3,4]],[[2,0],[0,2]]]},
+                  {"operator":"-","operands":[{"operator":"-","operands":[[[1,1],[1,1]]]}]}]}
+                """);
+        Path output = tempDir.resolve("out.json");
+
+        JsonNode out = runMain(input, 4, output, option);
+        assertResultMatrix(out, new double[][] {{2, 3}, {4, 5}});
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4})
+    void workStealingSchedulerProducesSameResult(int threads, @TempDir Path tempDir) throws Exception {
+        Path input = writeJson(tempDir, "nested.json", """
+                {"operator":"+","operands":[
+                  {"operator":"*","operands":[[[1,2,3],[4,5,6]],{"operator":"T","operands":[[[1,2,3],[4,5,6]]]}]},
+                  {"operator":"-","operands":[[[1,1],[1,1]]]}]}
+                """);
+        Path output = tempDir.resolve("out.json");
+
+        JsonNode out = runMain(input, threads, output, "--scheduler=work-stealing");
+        assertResultMatrix(out, new double[][] {{13, 31}, {31, 76}});
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4})
+    void proportionalSchedulerProducesSameResult(int threads, @TempDir Path tempDir) throws Exception {
+        Path input = writeJson(tempDir, "nested.json", """
+                {"operator":"+","operands":[
+                  {"operator":"*","operands":[[[1,2,3],[4,5,6]],{"operator":"T","operands":[[[1,2,3],[4,5,6]]]}]},
+                  {"operator":"-","operands":[[[1,1],[1,1]]]}]}
+                """);
+        Path output = tempDir.resolve("out.json");
+
+        JsonNode out = runMain(input, threads, output, "--scheduler=proportional");
+        assertResultMatrix(out, new double[][] {{13, 31}, {31, 76}});
+    }
+
+    // runs every batch on the calling thread, and before each batch replays the compute() of the
+    // speculative tasks of the previous one, as late losing attempts would
+    private static final class LateAttemptExecutor implements TaskExecutor {
+        final List<SpeculativeTask<?>> late = new ArrayList<>();
+        int replayed = 0;
+
+        void replay() {
+            for (SpeculativeTask<?> task : late) {
+                task.compute();
+                replayed++;
+            }
+            late.clear();
+        }
+
+        @Override
+        public CompletableFuture<Void> submitBatch(Job job, String operation, Iterable<Runnable> tasks) {
+            replay();
+            for (Runnable task : tasks) {
+                task.run();
+                if (task instanceof SpeculativeTask) {
+                    late.add((SpeculativeTask<?>) task);
+                }
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public String getWorkerReport() {
+            return "";
+        }
+
+        @Override
+        public String getMetricsJson() {
+            return "{}";
+        }
+
+        @Override
+        public long getTasksRun(Job job) {
+            return 0;
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"--precision=double", "--precision=single"})
+    void lateSpeculativeAttemptsDoNotTouchTheMatrix(String precision) {
+        // (A * B) * B: the second step multiplies in place into the matrix of the first, so the late
+        // attempts of the first run while it is in the next compute phase, those of the second after
+        // it has been unloaded
+        double[][] a = {{1, 2}, {3, 4}};
+        double[][] b = {{0, 1}, {1, 0}};
+        ComputationNode product = new ComputationNode("*",
+                new ArrayList<>(List.of(new ComputationNode(a), new ComputationNode(b))));
+        ComputationNode root = new ComputationNode("*", new ArrayList<>(List.of(product, new ComputationNode(b))));
+        LateAttemptExecutor executor = new LateAttemptExecutor();
+        EngineRun run = new EngineRun(executor, EngineConfig.parse(new String[] {precision}), null, new BufferPool(),
+                new ChunkSizer(1), true, Job.DEFAULT);
+
+        double[][] result = run.run(root).getMatrix();
+        executor.replay();
+        assertTrue(executor.replayed >= 2, "Both steps should have speculative tasks");
+        assertEquals(1, result[0][0], EPS);
+        assertEquals(4, result[1][1], EPS);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"--storage=off-heap", "--storage=mapped"})
+    void failedRunReturnsEarlierResultsToTheArena(String storage) {
+        // -A is resident in the arena when A' * B' fails on its shapes
+        double[][] a = new double[200][200];
+        double[][] b = new double[2][3];
+        ComputationNode negate = new ComputationNode("-", new ArrayList<>(List.of(new ComputationNode(a))));
+        ComputationNode product = new ComputationNode("*",
+                new ArrayList<>(List.of(new ComputationNode(b), new ComputationNode(b))));
+        ComputationNode root = new ComputationNode("+", new ArrayList<>(List.of(negate, product)));
+        BufferArena arena = storage.endsWith("mapped") ? new MappedArena() : new OffHeapArena();
+        TiredExecutor executor = new TiredExecutor(2);
+        try {
+            EngineRun run = new EngineRun(executor, EngineConfig.parse(new String[] {storage}), arena,
+                    new BufferPool(), new ChunkSizer(2), false, Job.DEFAULT);
+            assertThrows(IllegalArgumentException.class, () -> run.run(root));
+            assertEquals(0, arena.liveBytes());
+        } finally {
+            executor.shutdown();
+            arena.close();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"--precision=double", "--precision=single", "--storage=off-heap"})
+    void speculationProducesSameResult(String option, @TempDir Path tempDir) throws Exception {
+        Path input = writeJson(tempDir, "nested.json", """
+                {"operator":"+","operands":[
+                  {"operator":"*","operands":[[[1,2,3],[4,5,6]],{"operator":"T","operands":[[[1,2,3],[4,5,6]]]}]},
+                  {"operator":"-","operands":[[[1,1],[1,1]]]}]}
+                """);
+        Path output = tempDir.resolve("out.json");
+
+        JsonNode out = runMain(input, 4, output, "--speculate=on", option);
+        assertResultMatrix(out, new double[][] {{13, 31}, {31, 76}});
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"--scheduler=fatigue", "--scheduler=work-stealing", "--scheduler=proportional"})
+    void spinningHandoffProducesSameResult(String scheduler, @TempDir Path tempDir) throws Exception {
+        Path input = writeJson(tempDir, "nested.json", """
+                {"operator":"+","operands":[
+                  {"operator":"*","operands":[[[1,2,3],[4,5,6]],{"operator":"T","operands":[[[1,2,3],[4,5,6]]]}]},
+                  {"operator":"-","operands":[[[1,1],[1,1]]]}]}
+                """);
+        Path output = tempDir.resolve("out.json");
+
+        JsonNode out = runMain(input, 4, output, "--handoff=spinning", scheduler);
+        assertResultMatrix(out, new double[][] {{13, 31}, {31, 76}});
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"--executor=tired", "--executor=virtual"})
+    void metricsFileHasHistogramsPerOperation(String executor, @TempDir Path tempDir) throws Exception {
+        Path input = writeJson(tempDir, "nested.json", """
+                {"operator":"+","operands":[
+                  {"operator":"*","operands":[[[1,2,3],[4,5,6]],{"operator":"T","operands":[[[1,2,3],[4,5,6]]]}]},
+                  {"operator":"-","operands":[[[1,1],[1,1]]]}]}
+                """);
+        Path output = tempDir.resolve("out.json");
+        Path metrics = tempDir.resolve("metrics.json");
+
+        JsonNode out = runMain(input, 2, output, executor, "--metrics=" + metrics);
+        assertResultMatrix(out, new double[][] {{13, 31}, {31, 76}});
+        JsonNode operations = mapper.readTree(metrics.toFile()).get("operations");
+        for (String operation : new String[] {"ADD", "MULTIPLY", "NEGATE"}) {
+            assertTrue(operations.get(operation).get("makespan").get("count").asLong() >= 1, operation);
+        }
+    }
+
+    // (k*A) * (k*A)^T + -(ones), with A = [[1,2,3],[4,5,6]]: k^2 * [[14,32],[32,77]] - 1
+    private static ComputationNode scaledTree(int k) {
+        double[][] a = {{k, 2 * k, 3 * k}, {4 * k, 5 * k, 6 * k}};
+        ComputationNode transpose = new ComputationNode("T", new ArrayList<>(List.of(new ComputationNode(a))));
+        ComputationNode product = new ComputationNode("*",
+                new ArrayList<>(List.of(new ComputationNode(a), transpose)));
+        ComputationNode negation = new ComputationNode("-",
+                new ArrayList<>(List.of(new ComputationNode(new double[][] {{1, 1}, {1, 1}}))));
+        return new ComputationNode("+", new ArrayList<>(List.of(product, negation)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"--storage=contiguous", "--storage=per-vector", "--storage=off-heap", "--storage=mapped",
+            "--storage=tiled"})
+    void engineServesConcurrentRuns(String storage) throws Exception {
+        EngineConfig config = EngineConfig.parse(new String[] {storage});
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try (LinearAlgebraEngine engine = new LinearAlgebraEngine(3, config)) {
+            List<Future<?>> runs = new ArrayList<>();
+            for (int caller = 1; caller <= 4; caller++) {
+                final int k = caller;
+                runs.add(callers.submit(() -> {
+                    for (int i = 0; i < 25; i++) {
+                        double[][] result = engine.run(scaledTree(k)).getMatrix();
+                        double[][] expected = {{14 * k * k - 1, 32 * k * k - 1}, {32 * k * k - 1, 77 * k * k - 1}};
+                        for (int row = 0; row < 2; row++) {
+                            for (int col = 0; col < 2; col++) {
+                                assertEquals(expected[row][col], result[row][col], EPS, "Caller " + k);
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> run : runs) {
+                run.get();
+            }
+        } finally {
+            callers.shutdown();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"--executor=tired", "--executor=virtual"})
+    void engineAccountsRunsToTheirJobs(String executor) throws Exception {
+        scheduling.Job batch = new scheduling.Job("batch", 1.0, 0);
+        scheduling.Job interactive = new scheduling.Job("interactive", 4.0, 1);
+        try (LinearAlgebraEngine engine = new LinearAlgebraEngine(2, EngineConfig.parse(new String[] {executor}))) {
+            assertEquals(13, engine.run(scaledTree(1), batch).getMatrix()[0][0], EPS);
+            assertEquals(55, engine.run(scaledTree(2), interactive).getMatrix()[0][0], EPS);
+            assertTrue(engine.getTasksRun(batch) > 0 && engine.getTasksRun(interactive) > 0);
+            String report = engine.getWorkerReport();
+            assertTrue(report.contains("Job batch") && report.contains("Job interactive"), report);
+            assertThrows(IllegalArgumentException.class, () -> engine.run(scaledTree(1), null));
+        }
+    }
+
+    @Test
+    void closedEngineRejectsRuns() {
+        LinearAlgebraEngine engine = new LinearAlgebraEngine(2);
+        assertEquals(13, engine.run(scaledTree(1)).getMatrix()[0][0], EPS);
+        engine.close();
+        engine.close();
+        assertThrows(IllegalStateException.class, () -> engine.run(scaledTree(1)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4})
+    void virtualThreadExecutorProducesSameResult(int threads, @TempDir Path tempDir) throws Exception {
+        Path input = writeJson(tempDir, "nested.json", """
+                {"operator":"+","operands":[
+                  {"operator":"*","operands":[[[1,2,3],[4,5,6]],{"operator":"T","operands":[[[1,2,3],[4,5,6]]]}]},
+                  {"operator":"-","operands":[[[1,1],[1,1]]]}]}
+                """);
+        Path output = tempDir.resolve("out.json");
+
+        JsonNode out = runMain(input, threads, output, "--executor=virtual");
+        assertResultMatrix(out, new double[][] {{13, 31}, {31, 76}});
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4})
+    void tallMatricesAreSplitIntoRowRanges(int threads, @TempDir Path tempDir) throws Exception {
+        // far more rows than workers, with rows too short to be worth a task each
+        int rows = 1000;
+        StringBuilder left = new StringBuilder("[");
+        StringBuilder right = new StringBuilder("[");
+        double[][] expected = new double[rows][];
+        for (int i = 0; i < rows; i++) {
+            String separator = (i == 0) ? "" : ",";
+            left.append(separator).append("[").append(i).append(",1]");
+            right.append(separator).append("[1,").append(i).append("]");
+            expected[i] = new double[] {-(i + 1), -(i + 1)};
+        }
+        Path input = writeJson(tempDir, "tall.json", "{\"operator\":\"-\",\"operands\":[{\"operator\":\"+\",\"operands\":["
+                + left + "]," + right + "]]}]}");
+        Path output = tempDir.resolve("out.json");
+
+        JsonNode out = runMain(input, threads, output);
+        assertResultMatrix(out, expected);
+    }
+
+    @Test
+    void tiledStorageHandlesEdgeTiles(@TempDir Path tempDir) throws Exception {
+        // 2x2 tiles over a 3x1 by 1x3 product leave partial tiles on both edges
+        Path input = writeJson(tempDir, "tiled.json", """
+                {"operator":"+","operands":[
+                  {"operator":"*","operands":[[[1],[2],[3]],[[1,2,3]]]},
+                  {"operator":"T","operands":[[[1,0,0],[0,1,0],[0,0,1]]]}]}
+                """);
+        Path output = tempDir.resolve("out.json");
+
+        JsonNode out = runMain(input, 3, output, "--storage=tiled", "--tile=2");
+        assertResultMatrix(out, new double[][] {{2, 2, 3}, {2, 5, 6}, {3, 6, 10}});
+    }
+
+    @Test
+    void mappedStorageMultipliesNonSquareChain(@TempDir Path tempDir) throws Exception {
+        Path input = writeJson(tempDir, "chain.json", """
+                {"operator":"*","operands":[[[1,2,3]],[[1,0],[0,1],[1,1]],[[2,0,1],[0,1,0]]]}
+                """);
+        Path output = tempDir.resolve("out.json");
+
+        JsonNode out = runMain(input, 3, output, "--storage=mapped", "--spill-dir=" + tempDir);
+        assertResultMatrix(out, new double[][] {{8, 5, 4}});
+    }
+
+    @Test
+    void unknownOptionProducesErrorOutput(@TempDir Path tempDir) throws Exception {
+        Path input = writeJson(tempDir, "add.json", """
+                {"operator":"+","operands":[[[1]],[[2]]]}
+                """);
+        Path output = tempDir.resolve("out.json");
+
+        JsonNode out = runMain(input, 2, output, "--no-such-option=1");
+        assertTrue(out.get("error").asText().contains("Unknown option"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 4})
+    void strassenMultiplicationProducesExpectedResult(int threads, @TempDir Path tempDir) throws Exception {
+        Path input = writeJson(tempDir, "strassen.json", """
+                {"operator":"*","operands":[[[1,2,3],[4,5,6],[7,8,9]],[[9,8,7],[6,5,4],[3,2,1]]]}
+                """);
+        Path output = tempDir.resolve("out.json");
+
+        JsonNode out = runMain(input, threads, output, "--strassen=2");
+        assertResultMatrix(out, new double[][] {{30, 24, 18}, {84, 69, 54}, {138, 114, 90}});
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"--storage=off-heap", "--storage=mapped"})
+    void strassenIsSkippedForArenaLayouts(String storage, @TempDir Path tempDir) throws Exception {
+        Path input = writeJson(tempDir, "strassen.json", """
+                {"operator":"*","operands":[[[1,2,3],[4,5,6],[7,8,9]],[[9,8,7],[6,5,4],[3,2,1]]]}
+                """);
+        Path output = tempDir.resolve("out.json");
+        Path metrics = tempDir.resolve("metrics.json");
+
+        JsonNode out = runMain(input, 2, output, "--strassen=2", storage, "--metrics=" + metrics);
+        assertResultMatrix(out, new double[][] {{30, 24, 18}, {84, 69, 54}, {138, 114, 90}});
+        // Strassen would have run a batch of seven sub-products plus a combining batch
+        JsonNode multiply = mapper.readTree(metrics.toFile()).get("operations").get("MULTIPLY");
+        assertEquals(1, multiply.get("makespan").get("count").asLong());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"--sparse=0.5", "--sparse=off"})
+    void sparseOperandsProduceSameResult(String option, @TempDir Path tempDir) throws Exception {
+        // at 0.5 the two 2-of-9 matrices are kept in CSR form; the all-ones matrix stays dense
+        Path input = writeJson(tempDir, "sparse.json", """
+                {"operator":"*","operands":[
+                  {"operator":"+","operands":[
+                    {"operator":"*","operands":[[[1,0,0],[0,0,2],[0,0,0]],{"operator":"T","operands":[[[0,3,0],[0,0,0],[4,0,0]]]}]},
+                    {"operator":"-","operands":[[[1,1,1],[1,1,1],[1,1,1]]]}]},
+                  [[1,0,0],[0,0,2],[0,0,0]]]}
+                """);
+        Path output = tempDir.resolve("out.json");
+
+        JsonNode out = runMain(input, 4, output, option);
+        assertResultMatrix(out, new double[][] {{-1, 0, -2}, {-1, 0, -2}, {-1, 0, -2}});
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"--precision=single", "--precision=mixed"})
+    void singlePrecisionProducesSameResult(String option, @TempDir Path tempDir) throws Exception {
+        Path input = writeJson(tempDir, "nested.json", """
+                {"operator":"+","operands":[
+                  {"operator":"*","operands":[[[1,2,3],[4,5,6]],{"operator":"T","operands":[[[1,2,3],[4,5,6]]]}]},
+                  {"operator":"-","operands":[[[1,1],[1,1]]]}]}
+                """);
+        Path output = tempDir.resolve("out.json");
+
+        JsonNode out = runMain(input, 4, output, option);
+        assertResultMatrix(out, new double[][] {{13, 31}, {31, 76}});
+    }
+
+    @Test
+    void offHeapSinglePrecisionIsRejected(@TempDir Path tempDir) throws Exception {
+        Path input = writeJson(tempDir, "add.json", """
+                {"operator":"+","operands":[[[1]],[[2]]]}
+                """);
+        Path output = tempDir.resolve("out.json");
+
+        JsonNode out = runMain(input, 2, output, "--storage=off-heap", "--precision=single");
+        assertTrue(out.get("error").asText().contains("double precision"));
+    }
 }